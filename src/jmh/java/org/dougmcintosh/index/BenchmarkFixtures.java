@@ -0,0 +1,188 @@
+package org.dougmcintosh.index;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.dougmcintosh.index.lucene.CustomAnalyzer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic inputs shared by the benchmarks: sermon-like text, generated sample PDFs and sermon
+ * metadata. Real manuscripts can be benchmarked instead by pointing the {@value #SAMPLE_PDFS_PROPERTY}
+ * system property at a directory of PDF files.
+ */
+public final class BenchmarkFixtures {
+    public static final String SAMPLE_PDFS_PROPERTY = "indexer.bench.pdfs";
+    public static final String COPYRIGHT_LINE = "COPYRIGHT © 2021 Doug McIntosh Ministries. All rights reserved.";
+    private static final String[] WORDS = (
+        "the and of to in that he is for his was with as it not be by they this all which but him are " +
+        "lord god jesus christ spirit father grace faith hope love righteousness salvation covenant " +
+        "kingdom heaven scripture gospel apostle disciples prophet israel jerusalem temple sacrifice " +
+        "forgiveness repentance redemption resurrection fellowship worship obedience wisdom promise " +
+        "chapter verse passage epistle corinthians galatians ephesians philippians colossians romans " +
+        "believers church ministry prayer blessing mercy glory judgment eternal commandment testimony " +
+        "sanctification justification propitiation reconciliation inheritance transgression shepherd"
+    ).split(" ");
+    private static boolean stopWordsInitialized = false;
+    private static boolean metadataLoaded = false;
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * @return roughly {@code chars} characters of space separated words in lines of about 80
+     * characters, the same text for the same arguments
+     */
+    public static String text(int chars, long seed) {
+        final Random random = new Random(seed);
+        final StringBuilder text = new StringBuilder(chars + 16);
+        int lineLength = 0;
+        while (text.length() < chars) {
+            final String word = WORDS[random.nextInt(WORDS.length)];
+            text.append(word);
+            lineLength += word.length();
+            if (lineLength > 80) {
+                text.append('\n');
+                lineLength = 0;
+            } else {
+                text.append(' ');
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Write a PDF with {@code pages} pages of text, each ending with a copyright line.
+     */
+    public static File samplePdf(Path dir, String name, int pages, long seed) throws IOException {
+        final File file = dir.resolve(name).toFile();
+        final Random random = new Random(seed);
+
+        try (final PDDocument doc = new PDDocument()) {
+            for (int p = 0; p < pages; p++) {
+                final PDPage page = new PDPage();
+                doc.addPage(page);
+                try (final PDPageContentStream content = new PDPageContentStream(doc, page)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 10);
+                    content.setLeading(14);
+                    content.newLineAtOffset(50, 740);
+                    for (String line : text(3200, random.nextLong()).split("\n")) {
+                        content.showText(line.trim());
+                        content.newLine();
+                    }
+                    content.showText(COPYRIGHT_LINE);
+                    content.endText();
+                }
+            }
+            doc.save(file);
+        }
+        return file;
+    }
+
+    /**
+     * @return the PDF files in the directory named by {@value #SAMPLE_PDFS_PROPERTY}, or an empty list
+     * if the property isn't set
+     */
+    public static List<File> samplePdfsFromProperty() {
+        final String dir = System.getProperty(SAMPLE_PDFS_PROPERTY);
+        if (dir == null) {
+            return new ArrayList<>();
+        }
+        final File[] files = new File(dir).listFiles((d, name) -> name.toLowerCase().endsWith(".pdf"));
+        if (files == null || files.length == 0) {
+            throw new IllegalStateException("No pdf files found in " + dir);
+        }
+        Arrays.sort(files);
+        return Arrays.asList(files);
+    }
+
+    /**
+     * Create {@code count} empty manuscripts under {@code dir/pdf} and a sermon metadata file describing
+     * them, then load it into {@link SermonMetadata}. Metadata can only be loaded once per JVM.
+     *
+     * @return the manuscripts
+     */
+    public static synchronized List<File> loadSermonMetadata(Path dir, int count) throws IOException {
+        if (metadataLoaded) {
+            throw new IllegalStateException("Sermon metadata has already been loaded.");
+        }
+
+        final List<File> manuscripts = new ArrayList<>(count);
+        final File metadataFile = dir.resolve("metadata.json").toFile();
+        try (final JsonGenerator json = new JsonFactory().createGenerator(metadataFile, JsonEncoding.UTF8)) {
+            json.writeStartObject();
+            json.writeObjectFieldStart("Old Testament");
+            json.writeObjectFieldStart("subCategories");
+            int sermon = 0;
+            for (int series = 0; sermon < count; series++) {
+                json.writeObjectFieldStart("Book " + series);
+                json.writeArrayFieldStart("seriesCollection");
+                json.writeStartObject();
+                json.writeStringField("seriesCode", "S" + series);
+                json.writeStringField("seriesTitle", "Series " + series);
+                json.writeArrayFieldStart("sermons");
+                for (int i = 0; i < 50 && sermon < count; i++, sermon++) {
+                    final String relativePath = String.format("pdf/S%d/sermon%05d.pdf", series, sermon);
+                    final Path manuscript = dir.resolve(relativePath);
+                    Files.createDirectories(manuscript.getParent());
+                    Files.write(manuscript, new byte[0]);
+                    manuscripts.add(manuscript.toFile());
+
+                    json.writeStartObject();
+                    json.writeStringField("pdf", relativePath);
+                    json.writeStringField("audio", relativePath.replace(".pdf", ".mp3"));
+                    json.writeStringField("title", "Sermon " + sermon);
+                    json.writeStringField("date", "2001-01-01");
+                    json.writeStringField("passage", "John 3:16");
+                    json.writeEndObject();
+                }
+                json.writeEndArray();
+                json.writeEndObject();
+                json.writeEndArray();
+                json.writeEndObject();
+            }
+            json.writeEndObject();
+            json.writeEndObject();
+            json.writeEndObject();
+        }
+
+        SermonMetadata.load(metadataFile);
+        metadataLoaded = true;
+        return manuscripts;
+    }
+
+    /**
+     * Initialize the analyzer's default stop words once per JVM.
+     */
+    public static synchronized void initializeStopWords() {
+        if (!stopWordsInitialized) {
+            CustomAnalyzer.initializeStopWords(null);
+            stopWordsInitialized = true;
+        }
+    }
+
+    public static Path tempDir(String prefix) throws IOException {
+        return Files.createTempDirectory("indexer-bench-" + prefix);
+    }
+
+    public static void delete(Path dir) throws IOException {
+        if (dir != null) {
+            MoreFiles.deleteRecursively(dir, RecursiveDeleteOption.ALLOW_INSECURE);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package org.dougmcintosh.index;
+
+import org.dougmcintosh.index.lucene.LuceneOutputWriter;
+import org.dougmcintosh.index.lucene.LuceneWriteMode;
+import org.dougmcintosh.index.lunr.LunrOutputWriter;
+import org.dougmcintosh.util.Compression;
+import org.dougmcintosh.util.SynchronizedOutputWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Index entry write throughput of the output writers. Run with {@code -t <threads>} to measure
+ * contention between write threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class OutputWriterBenchmark {
+    private static final int ENTRIES = 256;
+
+    @Param({"lucene", "lunr"})
+    public String writer;
+
+    @Param({"16384"})
+    public int chars;
+
+    private Path dir;
+    private SynchronizedOutputWriter outputWriter;
+    private IndexEntry[] entries;
+    private final AtomicInteger next = new AtomicInteger(0);
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        BenchmarkFixtures.initializeStopWords();
+        dir = BenchmarkFixtures.tempDir("writer");
+        final File pdf = Files.write(dir.resolve("sermon.pdf"), new byte[0]).toFile();
+
+        entries = new IndexEntry[ENTRIES];
+        for (int i = 0; i < ENTRIES; i++) {
+            final String text = BenchmarkFixtures.text(chars, i);
+            entries[i] = IndexEntry.builder()
+                .category("Old Testament")
+                .subCategory("Genesis")
+                .seriesCode("GEN")
+                .seriesTitle("Genesis")
+                .sermonTitle("Sermon " + i)
+                .passage("Genesis 1:1")
+                .pdfFile(pdf)
+                .pdfRelativePath("pdf/GEN/sermon" + i + ".pdf")
+                .audio("audio/GEN/sermon" + i + ".mp3")
+                .keywords(String.join(" ", new LinkedHashSet<>(Arrays.asList(text.split("\\s+")))))
+                .rawText(text)
+                .build();
+        }
+
+        final File outputDir = Files.createDirectory(dir.resolve("index")).toFile();
+        outputWriter = "lucene".equals(writer) ?
+            LuceneOutputWriter.builder()
+                .outputDir(outputDir)
+                .writeMode(LuceneWriteMode.CONCURRENT)
+                .build() :
+            new LunrOutputWriter(outputDir, Compression.none(), false);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        outputWriter.close();
+        BenchmarkFixtures.delete(dir);
+    }
+
+    @Benchmark
+    public boolean write() {
+        return outputWriter.write(entries[Math.floorMod(next.getAndIncrement(), ENTRIES)]);
+    }
+}
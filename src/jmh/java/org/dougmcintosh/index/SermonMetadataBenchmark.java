@@ -0,0 +1,51 @@
+package org.dougmcintosh.index;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metadata lookups for manuscripts, cycling through every manuscript in the metadata file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SermonMetadataBenchmark {
+    @Param({"1000", "10000"})
+    public int sermons;
+
+    private Path dir;
+    private File[] manuscripts;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        dir = BenchmarkFixtures.tempDir("metadata");
+        final List<File> files = BenchmarkFixtures.loadSermonMetadata(dir, sermons);
+        manuscripts = files.toArray(new File[0]);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        BenchmarkFixtures.delete(dir);
+    }
+
+    @Benchmark
+    public IndexEntry.Builder entryBuilderForManuscript() {
+        final File manuscript = manuscripts[next];
+        next = (next + 1) % manuscripts.length;
+        return SermonMetadata.entryBuilderForManuscript(manuscript);
+    }
+}
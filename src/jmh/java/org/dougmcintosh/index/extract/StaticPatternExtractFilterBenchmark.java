@@ -0,0 +1,64 @@
+package org.dougmcintosh.index.extract;
+
+import org.dougmcintosh.index.BenchmarkFixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The original extract filter over whole strings, and the single-pass cleanup writer with the
+ * default rules, on text with a copyright line every 4 KB.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StaticPatternExtractFilterBenchmark {
+    private static final int WRITE_CHUNK = 512;
+
+    @Param({"1000", "65536", "1048576"})
+    public int chars;
+
+    private String text;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        final StringBuilder builder = new StringBuilder(chars + 4096);
+        long seed = 11L;
+        while (builder.length() < chars) {
+            builder.append(BenchmarkFixtures.text(4096, seed++))
+                .append('\n').append(BenchmarkFixtures.COPYRIGHT_LINE).append('\n');
+        }
+        text = builder.substring(0, chars);
+    }
+
+    @Benchmark
+    public String filter() {
+        return StaticPatternExtractFilter.filter(text);
+    }
+
+    /**
+     * Text written in chunks through the cleanup writer, as a parser's content handler writes it.
+     * The writer also normalizes whitespace.
+     */
+    @Benchmark
+    public String cleaning() throws IOException {
+        final StringWriter out = new StringWriter(chars);
+        try (final Writer writer = CleanupRules.defaults().writer(out)) {
+            for (int i = 0; i < text.length(); i += WRITE_CHUNK) {
+                writer.write(text, i, Math.min(WRITE_CHUNK, text.length() - i));
+            }
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,63 @@
+package org.dougmcintosh.index.extract.tika;
+
+import org.dougmcintosh.index.BenchmarkFixtures;
+import org.dougmcintosh.index.extract.ExtractResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Text extraction of a single PDF, per parser profile. Uses generated PDFs of {@code pages} pages, or
+ * cycles through real manuscripts when {@value BenchmarkFixtures#SAMPLE_PDFS_PROPERTY} is set.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TikaExtractorBenchmark {
+    @Param({"1", "10", "50"})
+    public int pages;
+
+    @Param({"AUTO", "FAST"})
+    public String profile;
+
+    private Path dir;
+    private File[] pdfs;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        TikaExtractor.initialize(ParserProfile.valueOf(profile));
+
+        final List<File> samples = BenchmarkFixtures.samplePdfsFromProperty();
+        if (samples.isEmpty()) {
+            dir = BenchmarkFixtures.tempDir("extract");
+            samples.add(BenchmarkFixtures.samplePdf(dir, "sample.pdf", pages, 42L));
+        }
+        pdfs = samples.toArray(new File[0]);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        BenchmarkFixtures.delete(dir);
+    }
+
+    @Benchmark
+    public Optional<ExtractResult> extract() {
+        final File pdf = pdfs[next];
+        next = (next + 1) % pdfs.length;
+        return TikaExtractor.extract(pdf);
+    }
+}
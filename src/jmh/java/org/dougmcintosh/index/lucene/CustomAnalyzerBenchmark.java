@@ -0,0 +1,42 @@
+package org.dougmcintosh.index.lucene;
+
+import org.dougmcintosh.index.BenchmarkFixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keyword tokenization of extracted text across document sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CustomAnalyzerBenchmark {
+    private static final File SOURCE = new File("benchmark.pdf");
+
+    @Param({"1000", "65536", "1048576"})
+    public int chars;
+
+    private String text;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        BenchmarkFixtures.initializeStopWords();
+        text = BenchmarkFixtures.text(chars, 7L);
+    }
+
+    @Benchmark
+    public Collection<String> tokenize() {
+        return CustomAnalyzer.tokenize(SOURCE, text, CustomAnalyzer.DEFAULT_MIN_TOKEN_LENGTH);
+    }
+}
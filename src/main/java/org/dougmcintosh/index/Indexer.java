@@ -2,17 +2,26 @@ package org.dougmcintosh.index;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Stopwatch;
-import org.dougmcintosh.index.crawl.Crawler;
+import org.dougmcintosh.index.crawl.GlobFilter;
+import org.dougmcintosh.index.crawl.FileList;
+import org.dougmcintosh.index.crawl.ParallelCrawler;
+import org.dougmcintosh.index.crawl.PathListSource;
+import org.dougmcintosh.index.crawl.WorkSource;
+import org.dougmcintosh.index.jfr.FlightRecording;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.concurrent.TimeUnit;
-import java.util.regex.Pattern;
 
 public class Indexer {
     private static final Logger logger = LoggerFactory.getLogger(Indexer.class);
-    private static final Pattern FILE_PATTERN = Pattern.compile("(?i).+\\.pdf$");
     private final IndexerArgs args;
     private final Stopwatch stopwatch;
 
@@ -27,25 +36,105 @@ public class Indexer {
 
     public void index() throws IOException {
         logger.info("Starting index.");
+        final FlightRecording recording = args.isFlightRecording() ? FlightRecording.start(args.getOutputdir()) : null;
+        try {
+            run();
+        } finally {
+            if (recording != null) {
+                recording.close();
+            }
+        }
+    }
+
+    private void run() throws IOException {
+        final Instant started = Instant.now();
         stopwatch.start();
 
         SermonMetadata.load(args.getSermonMetadataFile());
         final WorkerFactory workerFactory = WorkerFactory.of(args);
 
-        try (final WorkManager workMgr = new WorkManager(args.getWorkers(), workerFactory)) {
-            Crawler.builder()
-                    .directories(args.getInputdirs())
-                    .filter(file -> file.isDirectory() || file.isFile() && FILE_PATTERN.matcher(file.getName()).matches())
-                    .workManager(workMgr)
-                    .recurse(args.isRecurse())
-                    .build()
-                    .crawl();
+        try (final ProgressMonitor monitor = ProgressMonitor.start(args.getMetricsPort());
+             final WorkManager workMgr = WorkManager.builder()
+                .extractors(args.getWorkers())
+                .analyzers(args.getAnalyzers())
+                .writers(args.getWriters())
+                .queueCapacity(args.getQueueCapacity())
+                .schedulePolicy(args.getSchedulePolicy())
+                .scheduleWindow(args.getScheduleWindow())
+                .memoryBudgetBytes(args.getMemoryBudgetBytes())
+                .workerFactory(workerFactory)
+                .build()) {
+            monitor.watch(workMgr);
+            try (final FileList fileList = openFileList()) {
+                if (workSource(workMgr, fileList).enumerate()) {
+                    workerFactory.enumerationComplete();
+                }
+            }
+            monitor.crawlComplete();
         } finally {
-            logger.info("Index completed in {} seconds. Processed {} files with {} failure(s). Index written to {}.",
+            logger.info("Index completed in {} seconds. Processed {} files ({} unchanged) with {} failure(s). Index written to {}.",
                     stopwatch.elapsed(TimeUnit.SECONDS),
                     Metrics.getFilesSeen(),
+                    Metrics.getFilesUnchanged(),
                     Metrics.getFailures(),
                     this.args.getOutputdir());
+            if (Metrics.getFilesDeduplicated() > 0) {
+                logger.info("{} duplicate file(s) shared an extraction, saving {} seconds of parsing.",
+                        Metrics.getFilesDeduplicated(),
+                        TimeUnit.NANOSECONDS.toSeconds(Metrics.getParseNanosSaved()));
+            }
+            writeReport(started);
+        }
+    }
+
+    private WorkSource workSource(WorkManager workMgr, FileList fileList) {
+        final GlobFilter filter = GlobFilter.of(args.getIncludes(), args.getExcludes());
+        switch (args.getWorkSource()) {
+            case CATALOG:
+                return PathListSource.builder()
+                    .directories(args.getInputdirs())
+                    .filter(filter)
+                    .workManager(workMgr)
+                    .paths(SermonMetadata.manuscriptPaths().iterator(), "sermon metadata")
+                    .build();
+            case LIST:
+                return PathListSource.builder()
+                    .directories(args.getInputdirs())
+                    .filter(filter)
+                    .workManager(workMgr)
+                    .paths(fileList, args.getFileList().equals(IndexerArgs.STDIN) ? "standard input" : args.getFileList())
+                    .build();
+            default:
+                return ParallelCrawler.builder()
+                    .directories(args.getInputdirs())
+                    .filter(filter)
+                    .workManager(workMgr)
+                    .recurse(args.isRecurse())
+                    .threads(args.getCrawlers())
+                    .build();
+        }
+    }
+
+    /**
+     * @return the file list of the list work source, or null for other work sources
+     */
+    private FileList openFileList() throws IOException {
+        final String path = args.getFileList();
+        if (path == null) {
+            return null;
+        }
+        final InputStream in = path.equals(IndexerArgs.STDIN) ? System.in : new FileInputStream(path);
+        return new FileList(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    private void writeReport(Instant started) {
+        final File reportFile = new File(args.getOutputdir(), Metrics.REPORT_FILE);
+        try {
+            Metrics.writeReport(reportFile, started, stopwatch.elapsed(TimeUnit.NANOSECONDS));
+            logger.info("Wrote performance report to {}.", reportFile.getAbsolutePath());
+        } catch (IOException e) {
+            // a missing report shouldn't mask the outcome of the run
+            logger.error("Failed to write performance report to {}.", reportFile.getAbsolutePath(), e);
         }
     }
 }
@@ -4,10 +4,20 @@ import com.google.common.base.Preconditions;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.dougmcintosh.index.crawl.WorkSourceType;
+import org.dougmcintosh.index.extract.tika.ExtractMode;
+import org.dougmcintosh.index.extract.tika.ParserProfile;
+import org.dougmcintosh.index.lucene.LuceneWriteMode;
+import org.dougmcintosh.index.lunr.LunrShardMode;
+import org.dougmcintosh.index.lunr.LunrSinkMode;
+import org.dougmcintosh.util.Compression;
+import org.dougmcintosh.index.lucene.ShardStore;
 
 import java.io.File;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -15,19 +25,66 @@ import java.util.stream.Collectors;
 public class IndexerArgs {
     private static final int DEFAULT_WORKERS = 6;
     private static final int DEFAULT_MIN_TOKEN_LENGTH = 5;
+    private static final int DEFAULT_ANALYZERS = 2;
+    private static final int DEFAULT_WRITERS = 1;
+    private static final int DEFAULT_QUEUE_CAPACITY = 16;
+    private static final int DEFAULT_CRAWLERS = 4;
+    /**
+     * File list path that reads the list from standard input.
+     */
+    public static final String STDIN = "-";
+    private static final int DEFAULT_EXTRACT_CACHE_SIZE_MB = 1024;
+    private static final int DEFAULT_LUNR_SHARD_SIZE_KB = 1024;
+    private static final int DEFAULT_SINK_BUFFER = 1024;
+    private static final int DEFAULT_PARSE_TIMEOUT_SECONDS = 120;
+    private static final int DEFAULT_PARSER_HEAP_MB = 512;
+    private static final int DEFAULT_COMPRESS_THREADS = Runtime.getRuntime().availableProcessors();
+    private static final List<String> DEFAULT_INCLUDES = Collections.singletonList("*.[pP][dD][fF]");
     private Set<File> inputdirs;
     private File outputdir;
     private File stopwordsFile;
     private File sermonMetadataFile;
+    private File extractCacheDir;
+    private File cleanupRulesFile;
     private final boolean recurse;
     private final int workers;
+    private final int analyzers;
+    private final int writers;
+    private final int queueCapacity;
+    private final SchedulePolicy schedulePolicy;
+    private final int scheduleWindow;
+    private final int crawlers;
+    private final WorkSourceType workSource;
+    private final String fileList;
+    private final int extractCacheSizeMb;
+    private final List<String> includes;
+    private final List<String> excludes;
     private final int minTokenLength;
     private boolean compress;
     private boolean prettyPrint;
+    private final boolean incremental;
+    private final boolean prebuilt;
+    private final boolean flightRecording;
+    private final boolean dedup;
     private final IndexType indexType;
+    private final ParserProfile parserProfile;
+    private final ExtractMode extractMode;
+    private final int parseTimeoutSeconds;
+    private final int parserHeapMb;
+    private final LuceneWriteMode luceneWriteMode;
+    private final ShardStore shardStore;
+    private final int forceMergeSegments;
+    private final LunrShardMode lunrShardMode;
+    private final int lunrShardSizeKb;
+    private final LunrSinkMode lunrSinkMode;
+    private final int sinkBuffer;
+    private final int compressLevel;
+    private final int compressThreads;
+    private final int metricsPort;
+    private final long memoryBudgetBytes;
 
     enum IndexType {
-        LUCENE, LUNR
+        LUCENE, LUNR, KEYWORDS
     }
 
     private IndexerArgs(Set<String> inputDirPaths,
@@ -35,11 +92,43 @@ public class IndexerArgs {
                         Optional<String> stopwordsPath,
                         boolean recurse,
                         Optional<Integer> workers,
+                        Optional<Integer> analyzers,
+                        Optional<Integer> writers,
+                        Optional<Integer> queueCapacity,
+                        SchedulePolicy schedulePolicy,
+                        Optional<Integer> scheduleWindow,
+                        Optional<Integer> crawlers,
+                        WorkSourceType workSource,
+                        Optional<String> fileList,
+                        List<String> includes,
+                        List<String> excludes,
                         Optional<Integer> minTokenLength,
                         IndexType indexType,
+                        ParserProfile parserProfile,
+                        ExtractMode extractMode,
+                        Optional<Integer> parseTimeoutSeconds,
+                        Optional<Integer> parserHeapMb,
+                        LuceneWriteMode luceneWriteMode,
+                        ShardStore shardStore,
+                        Optional<Integer> forceMergeSegments,
+                        LunrShardMode lunrShardMode,
+                        Optional<Integer> lunrShardSizeKb,
+                        LunrSinkMode lunrSinkMode,
+                        Optional<Integer> sinkBuffer,
+                        Optional<Integer> compressLevel,
+                        Optional<Integer> compressThreads,
+                        Optional<Integer> metricsPort,
+                        Optional<Integer> memoryBudgetMb,
                         String sermonMetadataPath,
+                        Optional<String> extractCachePath,
+                        Optional<Integer> extractCacheSizeMb,
+                        Optional<String> cleanupRulesPath,
                         boolean compress,
-                        boolean prettyPrint) {
+                        boolean prettyPrint,
+                        boolean incremental,
+                        boolean prebuilt,
+                        boolean flightRecording,
+                        boolean dedup) {
         Preconditions.checkState(CollectionUtils.isNotEmpty(inputDirPaths), "Input dir paths is null/empty.");
         Preconditions.checkState(StringUtils.isNotBlank(outputdirPath), "outputdirPath is null/blank.");
 
@@ -47,14 +136,81 @@ public class IndexerArgs {
         initOutputDir(outputdirPath);
         initStopWordsFile(stopwordsPath);
         initSermonMetadataFile(sermonMetadataPath);
+        initExtractCacheDir(extractCachePath);
+        initCleanupRulesFile(cleanupRulesPath);
 
         this.recurse = recurse;
         this.minTokenLength = minTokenLength.orElse(DEFAULT_MIN_TOKEN_LENGTH);
         this.compress = compress;
+        this.compressLevel = compressLevel.orElse(Compression.DEFAULT_LEVEL);
+        this.compressThreads = compressThreads.orElse(DEFAULT_COMPRESS_THREADS);
+        this.metricsPort = metricsPort.orElse(0);
+        this.memoryBudgetBytes = memoryBudgetMb.map(mb -> mb * 1024L * 1024L)
+                .orElse(Runtime.getRuntime().maxMemory() / 2);
         this.prettyPrint = prettyPrint;
+        this.incremental = incremental;
+        this.prebuilt = prebuilt;
+        this.flightRecording = flightRecording;
+        this.dedup = dedup;
         this.workers = workers.orElse(DEFAULT_WORKERS);
+        this.analyzers = analyzers.orElse(DEFAULT_ANALYZERS);
+        this.luceneWriteMode = Preconditions.checkNotNull(luceneWriteMode, "Lucene write mode cannot be null.");
+        this.shardStore = Preconditions.checkNotNull(shardStore, "Shard store cannot be null.");
+        this.forceMergeSegments = forceMergeSegments.orElse(0);
+        this.lunrShardMode = Preconditions.checkNotNull(lunrShardMode, "Lunr shard mode cannot be null.");
+        this.lunrSinkMode = Preconditions.checkNotNull(lunrSinkMode, "Lunr sink mode cannot be null.");
+        this.sinkBuffer = sinkBuffer.orElse(DEFAULT_SINK_BUFFER);
+        // category shards are only split by size when a size is requested
+        this.lunrShardSizeKb = lunrShardSizeKb.orElse(
+                lunrShardMode == LunrShardMode.SIZE ? DEFAULT_LUNR_SHARD_SIZE_KB : 0);
+        // concurrent and sharded lucene writes scale with the number of writing threads, so match the extract threads
+        this.writers = writers.orElse(
+                indexType == IndexType.LUCENE && luceneWriteMode != LuceneWriteMode.LOCKED ?
+                        this.workers : DEFAULT_WRITERS);
+        this.queueCapacity = queueCapacity.orElse(DEFAULT_QUEUE_CAPACITY);
+        this.schedulePolicy = Preconditions.checkNotNull(schedulePolicy, "Schedule policy cannot be null.");
+        this.scheduleWindow = scheduleWindow.orElse(0);
+        this.crawlers = crawlers.orElse(DEFAULT_CRAWLERS);
+        this.workSource = Preconditions.checkNotNull(workSource, "Work source cannot be null.");
+        this.fileList = fileList.orElse(null);
+        this.extractCacheSizeMb = extractCacheSizeMb.orElse(DEFAULT_EXTRACT_CACHE_SIZE_MB);
+        this.includes = includes.isEmpty() ? DEFAULT_INCLUDES : includes;
+        this.excludes = excludes;
         this.indexType = Preconditions.checkNotNull(indexType, "Index type cannot be null.");
+        this.parserProfile = Preconditions.checkNotNull(parserProfile, "Parser profile cannot be null.");
+        this.extractMode = Preconditions.checkNotNull(extractMode, "Extract mode cannot be null.");
+        this.parseTimeoutSeconds = parseTimeoutSeconds.orElse(DEFAULT_PARSE_TIMEOUT_SECONDS);
+        this.parserHeapMb = parserHeapMb.orElse(DEFAULT_PARSER_HEAP_MB);
+        Preconditions.checkState(this.parseTimeoutSeconds >= 1, "Parse timeout must be >= 1.");
+        Preconditions.checkState(this.parserHeapMb >= 16, "Parser heap must be >= 16.");
         Preconditions.checkState(this.workers >= 1, "Workers must be >= 1.");
+        Preconditions.checkState(this.analyzers >= 1, "Analyzers must be >= 1.");
+        Preconditions.checkState(this.writers >= 1, "Writers must be >= 1.");
+        Preconditions.checkState(this.queueCapacity >= 1, "Queue capacity must be >= 1.");
+        Preconditions.checkState(this.crawlers >= 1, "Crawlers must be >= 1.");
+        Preconditions.checkState((this.workSource == WorkSourceType.LIST) == (this.fileList != null),
+                "A file list is required by, and only used with, the list work source.");
+        Preconditions.checkState(this.fileList == null || this.fileList.equals(STDIN) || new File(this.fileList).isFile(),
+                "File list doesn't exist or isn't a file: " + this.fileList);
+        Preconditions.checkState(this.scheduleWindow >= 0, "Schedule window must be >= 0.");
+        Preconditions.checkState(this.extractCacheSizeMb >= 1, "Extract cache size must be >= 1.");
+        Preconditions.checkState(this.forceMergeSegments >= 0, "Force merge segments must be >= 0.");
+        Preconditions.checkState(this.lunrShardSizeKb >= 0, "Lunr shard size must be >= 0.");
+        Preconditions.checkState(this.sinkBuffer >= 1, "Sink buffer must be >= 1.");
+        Preconditions.checkState(lunrSinkMode == LunrSinkMode.LOCKED || this.indexType == IndexType.LUNR,
+                "Sink modes are only supported for the lunr index type.");
+        Preconditions.checkState(this.compressLevel >= 0 && this.compressLevel <= 9,
+                "Compression level must be between 0 and 9.");
+        Preconditions.checkState(this.compressThreads >= 1, "Compression threads must be >= 1.");
+        Preconditions.checkState(this.metricsPort >= 0 && this.metricsPort <= 65535,
+                "Metrics port must be between 0 and 65535 (0 disables).");
+        Preconditions.checkState(this.memoryBudgetBytes >= 0, "Memory budget must be >= 0.");
+        Preconditions.checkState(lunrShardMode == LunrShardMode.NONE || this.indexType == IndexType.LUNR,
+                "Sharded output is only supported for the lunr index type.");
+        Preconditions.checkState(!incremental || this.indexType == IndexType.LUCENE,
+                "Incremental indexing is only supported for the lucene index type.");
+        Preconditions.checkState(!prebuilt || this.indexType == IndexType.LUNR,
+                "Prebuilt indexes are only supported for the lunr index type.");
     }
 
     private void initInputDirs(Set<String> inputDirPaths) {
@@ -86,6 +242,22 @@ public class IndexerArgs {
                 "Sermon metadata path doesn't exist or isn't a file: " + sermonMetadataFile);
     }
 
+    private void initCleanupRulesFile(Optional<String> cleanupRulesPath) {
+        if (cleanupRulesPath.isPresent()) {
+            this.cleanupRulesFile = new File(cleanupRulesPath.get());
+            Preconditions.checkState(cleanupRulesFile.isFile(),
+                    "Cleanup rules path doesn't exist or isn't a file: " + cleanupRulesFile.getAbsolutePath());
+        }
+    }
+
+    private void initExtractCacheDir(Optional<String> extractCachePath) {
+        if (extractCachePath.isPresent()) {
+            this.extractCacheDir = new File(extractCachePath.get());
+            Preconditions.checkState(extractCacheDir.isDirectory(),
+                    "Extract cache directory does not exist or isn't a directory: " + extractCacheDir.getAbsolutePath());
+        }
+    }
+
     public static Builder builder() {
         return new Builder();
     }
@@ -94,6 +266,72 @@ public class IndexerArgs {
         return indexType;
     }
 
+    public ParserProfile getParserProfile() {
+        return parserProfile;
+    }
+
+    public ExtractMode getExtractMode() {
+        return extractMode;
+    }
+
+    public int getParseTimeoutSeconds() {
+        return parseTimeoutSeconds;
+    }
+
+    public int getParserHeapMb() {
+        return parserHeapMb;
+    }
+
+    public LuceneWriteMode getLuceneWriteMode() {
+        return luceneWriteMode;
+    }
+
+    public ShardStore getShardStore() {
+        return shardStore;
+    }
+
+    public int getForceMergeSegments() {
+        return forceMergeSegments;
+    }
+
+    public int getCompressLevel() {
+        return compressLevel;
+    }
+
+    public int getCompressThreads() {
+        return compressThreads;
+    }
+
+    /**
+     * @return port of the local metrics endpoint, or 0 when disabled
+     */
+    public int getMetricsPort() {
+        return metricsPort;
+    }
+
+    /**
+     * @return maximum estimated heap bytes of the files in flight, or 0 for no limit
+     */
+    public long getMemoryBudgetBytes() {
+        return memoryBudgetBytes;
+    }
+
+    public LunrSinkMode getLunrSinkMode() {
+        return lunrSinkMode;
+    }
+
+    public int getSinkBuffer() {
+        return sinkBuffer;
+    }
+
+    public LunrShardMode getLunrShardMode() {
+        return lunrShardMode;
+    }
+
+    public int getLunrShardSizeKb() {
+        return lunrShardSizeKb;
+    }
+
     public Set<File> getInputdirs() {
         return inputdirs;
     }
@@ -110,6 +348,21 @@ public class IndexerArgs {
         return sermonMetadataFile;
     }
 
+    public File getExtractCacheDir() {
+        return extractCacheDir;
+    }
+
+    public int getExtractCacheSizeMb() {
+        return extractCacheSizeMb;
+    }
+
+    /**
+     * @return file of cleanup rules applied to extracted text, or null to use the default rules
+     */
+    public File getCleanupRulesFile() {
+        return cleanupRulesFile;
+    }
+
     public boolean isRecurse() {
         return recurse;
     }
@@ -118,6 +371,54 @@ public class IndexerArgs {
         return workers;
     }
 
+    public int getAnalyzers() {
+        return analyzers;
+    }
+
+    public int getWriters() {
+        return writers;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public SchedulePolicy getSchedulePolicy() {
+        return schedulePolicy;
+    }
+
+    /**
+     * @return number of crawled files ordered by the schedule policy before the heaviest is
+     * extracted, or 0 to order the whole crawl
+     */
+    public int getScheduleWindow() {
+        return scheduleWindow;
+    }
+
+    public int getCrawlers() {
+        return crawlers;
+    }
+
+    public WorkSourceType getWorkSource() {
+        return workSource;
+    }
+
+    /**
+     * @return path of the file list for the list work source, {@link #STDIN} to read it from
+     * standard input, or null for other work sources
+     */
+    public String getFileList() {
+        return fileList;
+    }
+
+    public List<String> getIncludes() {
+        return includes;
+    }
+
+    public List<String> getExcludes() {
+        return excludes;
+    }
+
     public int getMinTokenLength() {
         return minTokenLength;
     }
@@ -126,21 +427,69 @@ public class IndexerArgs {
         return compress;
     }
 
+    public boolean isPrebuilt() {
+        return prebuilt;
+    }
+
+    public boolean isFlightRecording() {
+        return flightRecording;
+    }
+
+    public boolean isDedup() {
+        return dedup;
+    }
+
     public boolean isPrettyPrint() {
         return compress;
     }
 
+    public boolean isIncremental() {
+        return incremental;
+    }
+
     public static class Builder {
         private Set<String> inputdirPaths;
         private String outputdirPath;
         private Optional<String> stopwordsPath = Optional.empty();
         private String sermonMetadataPath;
+        private Optional<String> extractCachePath = Optional.empty();
+        private Optional<Integer> extractCacheSizeMb = Optional.empty();
+        private Optional<String> cleanupRulesPath = Optional.empty();
         private boolean recurse = true;
         private Optional<Integer> workers = Optional.empty();
+        private Optional<Integer> analyzers = Optional.empty();
+        private Optional<Integer> writers = Optional.empty();
+        private Optional<Integer> queueCapacity = Optional.empty();
+        private SchedulePolicy schedulePolicy = SchedulePolicy.CRAWL;
+        private Optional<Integer> scheduleWindow = Optional.empty();
+        private Optional<Integer> crawlers = Optional.empty();
+        private WorkSourceType workSource = WorkSourceType.CRAWL;
+        private Optional<String> fileList = Optional.empty();
+        private List<String> includes = Collections.emptyList();
+        private List<String> excludes = Collections.emptyList();
         private Optional<Integer> minTokenLength = Optional.empty();
         private boolean compress = true;
         private boolean prettyPrint = false;
+        private boolean incremental = false;
+        private boolean prebuilt = false;
+        private boolean flightRecording = false;
+        private boolean dedup = false;
         private IndexType indexType;
+        private ParserProfile parserProfile = ParserProfile.AUTO;
+        private ExtractMode extractMode = ExtractMode.LOCAL;
+        private Optional<Integer> parseTimeoutSeconds = Optional.empty();
+        private Optional<Integer> parserHeapMb = Optional.empty();
+        private LuceneWriteMode luceneWriteMode = LuceneWriteMode.LOCKED;
+        private ShardStore shardStore = ShardStore.DISK;
+        private Optional<Integer> forceMergeSegments = Optional.empty();
+        private LunrShardMode lunrShardMode = LunrShardMode.NONE;
+        private Optional<Integer> lunrShardSizeKb = Optional.empty();
+        private LunrSinkMode lunrSinkMode = LunrSinkMode.LOCKED;
+        private Optional<Integer> sinkBuffer = Optional.empty();
+        private Optional<Integer> compressLevel = Optional.empty();
+        private Optional<Integer> compressThreads = Optional.empty();
+        private Optional<Integer> metricsPort = Optional.empty();
+        private Optional<Integer> memoryBudgetMb = Optional.empty();
 
         public Builder inputdirPaths(String[] inputdirPaths) {
             if (ArrayUtils.isNotEmpty(inputdirPaths)) {
@@ -157,6 +506,61 @@ public class IndexerArgs {
             return this;
         }
 
+        public Builder parserProfile(Optional<String> parserProfile) {
+            parserProfile.ifPresent(profile -> this.parserProfile = ParserProfile.valueOf(profile.toUpperCase()));
+            return this;
+        }
+
+        public Builder extractMode(Optional<String> extractMode) {
+            extractMode.ifPresent(mode -> this.extractMode = ExtractMode.valueOf(mode.toUpperCase()));
+            return this;
+        }
+
+        public Builder parseTimeoutSeconds(Optional<Integer> parseTimeoutSeconds) {
+            this.parseTimeoutSeconds = parseTimeoutSeconds;
+            return this;
+        }
+
+        public Builder parserHeapMb(Optional<Integer> parserHeapMb) {
+            this.parserHeapMb = parserHeapMb;
+            return this;
+        }
+
+        public Builder luceneWriteMode(Optional<String> luceneWriteMode) {
+            luceneWriteMode.ifPresent(mode -> this.luceneWriteMode = LuceneWriteMode.valueOf(mode.toUpperCase()));
+            return this;
+        }
+
+        public Builder shardStore(Optional<String> shardStore) {
+            shardStore.ifPresent(store -> this.shardStore = ShardStore.valueOf(store.toUpperCase()));
+            return this;
+        }
+
+        public Builder forceMergeSegments(Optional<Integer> forceMergeSegments) {
+            this.forceMergeSegments = forceMergeSegments;
+            return this;
+        }
+
+        public Builder lunrShardMode(Optional<String> lunrShardMode) {
+            lunrShardMode.ifPresent(mode -> this.lunrShardMode = LunrShardMode.valueOf(mode.toUpperCase()));
+            return this;
+        }
+
+        public Builder lunrShardSizeKb(Optional<Integer> lunrShardSizeKb) {
+            this.lunrShardSizeKb = lunrShardSizeKb;
+            return this;
+        }
+
+        public Builder lunrSinkMode(Optional<String> lunrSinkMode) {
+            lunrSinkMode.ifPresent(mode -> this.lunrSinkMode = LunrSinkMode.valueOf(mode.toUpperCase()));
+            return this;
+        }
+
+        public Builder sinkBuffer(Optional<Integer> sinkBuffer) {
+            this.sinkBuffer = sinkBuffer;
+            return this;
+        }
+
         public Builder outputdirPath(String outputdirPath) {
             this.outputdirPath = outputdirPath;
             return this;
@@ -172,6 +576,21 @@ public class IndexerArgs {
             return this;
         }
 
+        public Builder extractCachePath(Optional<String> extractCachePath) {
+            this.extractCachePath = extractCachePath;
+            return this;
+        }
+
+        public Builder extractCacheSizeMb(Optional<Integer> extractCacheSizeMb) {
+            this.extractCacheSizeMb = extractCacheSizeMb;
+            return this;
+        }
+
+        public Builder cleanupRulesPath(Optional<String> cleanupRulesPath) {
+            this.cleanupRulesPath = cleanupRulesPath;
+            return this;
+        }
+
         public Builder recurse(boolean flag) {
             this.recurse = flag;
             return this;
@@ -182,26 +601,125 @@ public class IndexerArgs {
             return this;
         }
 
+        public Builder analyzers(Optional<Integer> analyzers) {
+            this.analyzers = analyzers;
+            return this;
+        }
+
+        public Builder writers(Optional<Integer> writers) {
+            this.writers = writers;
+            return this;
+        }
+
+        public Builder queueCapacity(Optional<Integer> queueCapacity) {
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        public Builder schedulePolicy(Optional<String> schedulePolicy) {
+            schedulePolicy.ifPresent(policy -> this.schedulePolicy = SchedulePolicy.valueOf(policy.toUpperCase()));
+            return this;
+        }
+
+        public Builder scheduleWindow(Optional<Integer> scheduleWindow) {
+            this.scheduleWindow = scheduleWindow;
+            return this;
+        }
+
+        public Builder crawlers(Optional<Integer> crawlers) {
+            this.crawlers = crawlers;
+            return this;
+        }
+
+        public Builder workSource(Optional<String> workSource) {
+            workSource.ifPresent(source -> this.workSource = WorkSourceType.valueOf(source.toUpperCase()));
+            return this;
+        }
+
+        public Builder fileList(Optional<String> fileList) {
+            this.fileList = fileList;
+            return this;
+        }
+
+        public Builder includes(String[] includes) {
+            if (ArrayUtils.isNotEmpty(includes)) {
+                this.includes = Arrays.asList(includes);
+            }
+            return this;
+        }
+
+        public Builder excludes(String[] excludes) {
+            if (ArrayUtils.isNotEmpty(excludes)) {
+                this.excludes = Arrays.asList(excludes);
+            }
+            return this;
+        }
+
         public Builder minTokenLength(Optional<Integer> minTokenLength) {
             this.minTokenLength = minTokenLength;
             return this;
         }
 
+        public Builder compressLevel(Optional<Integer> compressLevel) {
+            this.compressLevel = compressLevel;
+            return this;
+        }
+
+        public Builder compressThreads(Optional<Integer> compressThreads) {
+            this.compressThreads = compressThreads;
+            return this;
+        }
+
+        public Builder metricsPort(Optional<Integer> metricsPort) {
+            this.metricsPort = metricsPort;
+            return this;
+        }
+
+        public Builder memoryBudgetMb(Optional<Integer> memoryBudgetMb) {
+            this.memoryBudgetMb = memoryBudgetMb;
+            return this;
+        }
+
         public Builder compress(boolean flag) {
             this.compress = flag;
             return this;
         }
 
+        public Builder prebuilt(boolean flag) {
+            this.prebuilt = flag;
+            return this;
+        }
+
+        public Builder flightRecording(boolean flag) {
+            this.flightRecording = flag;
+            return this;
+        }
+
+        public Builder dedup(boolean flag) {
+            this.dedup = flag;
+            return this;
+        }
+
         public Builder prettyPrint(boolean flag) {
             this.prettyPrint = flag;
             return this;
         }
 
+        public Builder incremental(boolean flag) {
+            this.incremental = flag;
+            return this;
+        }
+
         public IndexerArgs build() {
             return new IndexerArgs(
                     inputdirPaths, outputdirPath, stopwordsPath,
-                    recurse, workers, minTokenLength, indexType,
-                    sermonMetadataPath, compress, prettyPrint);
+                    recurse, workers, analyzers, writers, queueCapacity, schedulePolicy, scheduleWindow,
+                    crawlers, workSource, fileList, includes, excludes, minTokenLength, indexType, parserProfile,
+                    extractMode, parseTimeoutSeconds, parserHeapMb,
+                    luceneWriteMode, shardStore, forceMergeSegments, lunrShardMode, lunrShardSizeKb, lunrSinkMode, sinkBuffer,
+                    compressLevel, compressThreads, metricsPort, memoryBudgetMb,
+                    sermonMetadataPath, extractCachePath, extractCacheSizeMb, cleanupRulesPath, compress, prettyPrint, incremental, prebuilt,
+                    flightRecording, dedup);
         }
     }
 }
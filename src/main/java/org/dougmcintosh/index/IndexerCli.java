@@ -32,6 +32,39 @@ public class IndexerCli {
     private static final String OPT_INDEX_TYPE_LONG = "indextype";
     private static final String OPT_SERMON_METADATA_PATH = "m";
     private static final String OPT_SERMON_METADATA_PATH_LONG = "metadata";
+    private static final String OPT_INCREMENTAL = "u";
+    private static final String OPT_INCREMENTAL_LONG = "incremental";
+    private static final String OPT_ANALYZERS_LONG = "analyzers";
+    private static final String OPT_WRITERS_LONG = "writers";
+    private static final String OPT_QUEUE_CAPACITY_LONG = "queuecapacity";
+    private static final String OPT_CRAWLERS_LONG = "crawlers";
+    private static final String OPT_WORK_SOURCE_LONG = "worksource";
+    private static final String OPT_FILE_LIST_LONG = "filelist";
+    private static final String OPT_SCHEDULE_LONG = "schedule";
+    private static final String OPT_SCHEDULE_WINDOW_LONG = "schedulewindow";
+    private static final String OPT_INCLUDE_LONG = "include";
+    private static final String OPT_EXCLUDE_LONG = "exclude";
+    private static final String OPT_PARSER_PROFILE_LONG = "parserprofile";
+    private static final String OPT_EXTRACT_CACHE_LONG = "extractcache";
+    private static final String OPT_EXTRACT_CACHE_SIZE_LONG = "extractcachesize";
+    private static final String OPT_CLEANUP_RULES_LONG = "cleanuprules";
+    private static final String OPT_LUCENE_WRITE_MODE_LONG = "lucenewritemode";
+    private static final String OPT_SHARD_STORE_LONG = "shardstore";
+    private static final String OPT_FORCE_MERGE_LONG = "forcemerge";
+    private static final String OPT_PREBUILT_LONG = "prebuilt";
+    private static final String OPT_LUNR_SHARDS_LONG = "lunrshards";
+    private static final String OPT_LUNR_SHARD_SIZE_LONG = "lunrshardsize";
+    private static final String OPT_LUNR_SINK_LONG = "lunrsink";
+    private static final String OPT_SINK_BUFFER_LONG = "sinkbuffer";
+    private static final String OPT_COMPRESS_LEVEL_LONG = "compresslevel";
+    private static final String OPT_COMPRESS_THREADS_LONG = "compressthreads";
+    private static final String OPT_METRICS_PORT_LONG = "metricsport";
+    private static final String OPT_MEMORY_BUDGET_LONG = "memorybudget";
+    private static final String OPT_JFR_LONG = "jfr";
+    private static final String OPT_DEDUP_LONG = "dedup";
+    private static final String OPT_EXTRACT_MODE_LONG = "extractmode";
+    private static final String OPT_PARSE_TIMEOUT_LONG = "parsetimeout";
+    private static final String OPT_PARSER_HEAP_LONG = "parserheap";
     private static final String OPT_HELP = "h";
     private static final String OPT_HELP_LONG = "help";
 
@@ -54,23 +87,87 @@ public class IndexerCli {
             final Optional<String> stopWordsPath = Optional.ofNullable(cli.getOptionValue(OPT_STOP_WORDS_PATH));
             final boolean recurse = cli.hasOption(OPT_RECURSE);
             final boolean compress = cli.hasOption(OPT_COMPRESS);
+            final Optional<Integer> compressLevel = optionalInteger(cli, OPT_COMPRESS_LEVEL_LONG);
+            final Optional<Integer> compressThreads = optionalInteger(cli, OPT_COMPRESS_THREADS_LONG);
             final boolean prettyPrint = cli.hasOption(OPT_PRETTY_PRINT);
             final Optional<Integer> workers = optionalInteger(cli, OPT_WORKERS);
+            final Optional<Integer> analyzers = optionalInteger(cli, OPT_ANALYZERS_LONG);
+            final Optional<Integer> writers = optionalInteger(cli, OPT_WRITERS_LONG);
+            final Optional<Integer> queueCapacity = optionalInteger(cli, OPT_QUEUE_CAPACITY_LONG);
+            final Optional<Integer> crawlers = optionalInteger(cli, OPT_CRAWLERS_LONG);
+            final Optional<String> workSource = Optional.ofNullable(cli.getOptionValue(OPT_WORK_SOURCE_LONG));
+            final Optional<String> fileList = Optional.ofNullable(cli.getOptionValue(OPT_FILE_LIST_LONG));
+            final Optional<String> schedulePolicy = Optional.ofNullable(cli.getOptionValue(OPT_SCHEDULE_LONG));
+            final Optional<Integer> scheduleWindow = optionalInteger(cli, OPT_SCHEDULE_WINDOW_LONG);
+            final String[] includes = cli.getOptionValues(OPT_INCLUDE_LONG);
+            final String[] excludes = cli.getOptionValues(OPT_EXCLUDE_LONG);
             final Optional<Integer> minTokenLength = optionalInteger(cli, OPT_MIN_TOKEN_LENGTH);
             final String indexType = cli.getOptionValue(OPT_INDEX_TYPE);
+            final Optional<String> parserProfile = Optional.ofNullable(cli.getOptionValue(OPT_PARSER_PROFILE_LONG));
+            final Optional<String> extractMode = Optional.ofNullable(cli.getOptionValue(OPT_EXTRACT_MODE_LONG));
+            final Optional<Integer> parseTimeoutSeconds = optionalInteger(cli, OPT_PARSE_TIMEOUT_LONG);
+            final Optional<Integer> parserHeapMb = optionalInteger(cli, OPT_PARSER_HEAP_LONG);
+            final Optional<String> luceneWriteMode = Optional.ofNullable(cli.getOptionValue(OPT_LUCENE_WRITE_MODE_LONG));
+            final Optional<String> shardStore = Optional.ofNullable(cli.getOptionValue(OPT_SHARD_STORE_LONG));
+            final Optional<Integer> forceMergeSegments = optionalInteger(cli, OPT_FORCE_MERGE_LONG);
             final String sermonMetadataPath = cli.getOptionValue(OPT_SERMON_METADATA_PATH);
+            final boolean incremental = cli.hasOption(OPT_INCREMENTAL);
+            final boolean prebuilt = cli.hasOption(OPT_PREBUILT_LONG);
+            final boolean flightRecording = cli.hasOption(OPT_JFR_LONG);
+            final boolean dedup = cli.hasOption(OPT_DEDUP_LONG);
+            final Optional<String> lunrShardMode = Optional.ofNullable(cli.getOptionValue(OPT_LUNR_SHARDS_LONG));
+            final Optional<Integer> lunrShardSizeKb = optionalInteger(cli, OPT_LUNR_SHARD_SIZE_LONG);
+            final Optional<String> lunrSinkMode = Optional.ofNullable(cli.getOptionValue(OPT_LUNR_SINK_LONG));
+            final Optional<Integer> sinkBuffer = optionalInteger(cli, OPT_SINK_BUFFER_LONG);
+            final Optional<String> extractCachePath = Optional.ofNullable(cli.getOptionValue(OPT_EXTRACT_CACHE_LONG));
+            final Optional<Integer> extractCacheSizeMb = optionalInteger(cli, OPT_EXTRACT_CACHE_SIZE_LONG);
+            final Optional<String> cleanupRulesPath = Optional.ofNullable(cli.getOptionValue(OPT_CLEANUP_RULES_LONG));
+            final Optional<Integer> metricsPort = optionalInteger(cli, OPT_METRICS_PORT_LONG);
+            final Optional<Integer> memoryBudgetMb = optionalInteger(cli, OPT_MEMORY_BUDGET_LONG);
 
             final IndexerArgs indexerArgs = IndexerArgs.builder()
                     .inputdirPaths(inputdirPaths)
                     .outputdirPath(outputdirPath)
                     .stopwordsPath(stopWordsPath)
                     .workers(workers)
+                    .analyzers(analyzers)
+                    .writers(writers)
+                    .queueCapacity(queueCapacity)
+                    .crawlers(crawlers)
+                    .workSource(workSource)
+                    .fileList(fileList)
+                    .schedulePolicy(schedulePolicy)
+                    .scheduleWindow(scheduleWindow)
+                    .includes(includes)
+                    .excludes(excludes)
                     .recurse(recurse)
                     .compress(compress)
+                    .compressLevel(compressLevel)
+                    .compressThreads(compressThreads)
                     .prettyPrint(prettyPrint)
                     .minTokenLength(minTokenLength)
                     .indexType(indexType)
+                    .parserProfile(parserProfile)
+                    .extractMode(extractMode)
+                    .parseTimeoutSeconds(parseTimeoutSeconds)
+                    .parserHeapMb(parserHeapMb)
+                    .luceneWriteMode(luceneWriteMode)
+                    .shardStore(shardStore)
+                    .forceMergeSegments(forceMergeSegments)
                     .sermonMetadataPath(sermonMetadataPath)
+                    .incremental(incremental)
+                    .prebuilt(prebuilt)
+                    .flightRecording(flightRecording)
+                    .dedup(dedup)
+                    .lunrShardMode(lunrShardMode)
+                    .lunrShardSizeKb(lunrShardSizeKb)
+                    .lunrSinkMode(lunrSinkMode)
+                    .sinkBuffer(sinkBuffer)
+                    .extractCachePath(extractCachePath)
+                    .extractCacheSizeMb(extractCacheSizeMb)
+                    .cleanupRulesPath(cleanupRulesPath)
+                    .metricsPort(metricsPort)
+                    .memoryBudgetMb(memoryBudgetMb)
                     .build();
 
             Indexer.with(indexerArgs).index();
@@ -127,7 +224,7 @@ public class IndexerCli {
                 .required(false)
                 .build());
         opts.addOption(Option.builder(OPT_WORKERS)
-                .desc("Number of worker threads that will consume files from the work queue.")
+                .desc("Number of worker threads that will extract text from queued files.")
                 .longOpt(OPT_WORKERS_LONG)
                 .required(false)
                 .hasArg()
@@ -151,7 +248,7 @@ public class IndexerCli {
                 .required(false)
                 .build());
         opts.addOption(Option.builder(OPT_INDEX_TYPE)
-                .desc("Index type. Either lucene or lunr.")
+                .desc("Index type. Either lucene, lunr or keywords.")
                 .longOpt(OPT_INDEX_TYPE_LONG)
                 .required()
                 .hasArg()
@@ -162,6 +259,228 @@ public class IndexerCli {
                 .required()
                 .hasArg()
                 .build());
+        opts.addOption(Option.builder(OPT_INCREMENTAL)
+                .desc("Only re-index manuscripts added or changed since the previous run. Lucene index type only.")
+                .longOpt(OPT_INCREMENTAL_LONG)
+                .hasArg(false)
+                .required(false)
+                .build());
+        opts.addOption(Option.builder()
+                .desc("Also write a prebuilt lunr index that clients load with lunr.Index.load. Lunr index type only.")
+                .longOpt(OPT_PREBUILT_LONG)
+                .hasArg(false)
+                .required(false)
+                .build());
+        opts.addOption(Option.builder()
+                .desc("Split the lunr index into shards listed by a manifest. Either none, category (one shard " +
+                        "per category and subcategory) or size (shards of --lunrshardsize). Defaults to none.")
+                .longOpt(OPT_LUNR_SHARDS_LONG)
+                .required(false)
+                .hasArg()
+                .build());
+        opts.addOption(Option.builder()
+                .desc("Approximate uncompressed size in kilobytes at which a lunr shard is closed and a new one started. " +
+                        "Defaults to 1024 when sharding by size; category shards are unlimited unless set.")
+                .longOpt(OPT_LUNR_SHARD_SIZE_LONG)
+                .required(false)
+                .hasArg()
+                .build());
+        opts.addOption(Option.builder()
+                .desc("How write threads hand entries to the lunr writer. Either locked (threads take turns " +
+                        "writing), async (a ring buffer drained by one writer thread) or ordered (async, written " +
+                        "in manuscript path order once indexing finishes). Defaults to locked.")
+                .longOpt(OPT_LUNR_SINK_LONG)
+                .required(false)
+                .hasArg()
+                .build());
+        opts.addOption(Option.builder()
+                .desc("Number of entries the async and ordered lunr sinks buffer for their writer thread. " +
+                        "Defaults to 1024.")
+                .longOpt(OPT_SINK_BUFFER_LONG)
+                .required(false)
+                .hasArg()
+                .build());
+        opts.addOption(Option.builder()
+                .desc("gzip compression level from 0 (fastest) to 9 (smallest). Defaults to 6.")
+                .longOpt(OPT_COMPRESS_LEVEL_LONG)
+                .required(false)
+                .hasArg()
+                .build());
+        opts.addOption(Option.builder()
+                .desc("Number of threads compressing index output. Defaults to the number of processors.")
+                .longOpt(OPT_COMPRESS_THREADS_LONG)
+                .required(false)
+                .hasArg()
+                .build());
+        opts.addOption(Option.builder()
+                .desc("Number of threads that will analyze extracted text and build index entries.")
+                .longOpt(OPT_ANALYZERS_LONG)
+                .required(false)
+                .hasArg()
+                .build());
+        opts.addOption(Option.builder()
+                .desc("Number of threads that will write index entries to the index.")
+                .longOpt(OPT_WRITERS_LONG)
+                .required(false)
+                .hasArg()
+                .build());
+        opts.addOption(Option.builder()
+                .desc("Maximum number of files waiting between each stage of the indexing pipeline.")
+                .longOpt(OPT_QUEUE_CAPACITY_LONG)
+                .required(false)
+                .hasArg()
+                .build());
+        opts.addOption(Option.builder()
+                .desc("Number of threads that will crawl the input directories.")
+                .longOpt(OPT_CRAWLERS_LONG)
+                .required(false)
+                .hasArg()
+                .build());
+        opts.addOption(Option.builder()
+                .desc("Where files to index come from. Either crawl (crawl the input directories), catalog " +
+                        "(the manuscripts listed in the sermon metadata file) or list (the files listed by " +
+                        "--filelist). Catalog and list paths are resolved against the input directories. " +
+                        "Defaults to crawl.")
+                .longOpt(OPT_WORK_SOURCE_LONG)
+                .required(false)
+                .hasArg()
+                .build());
+        opts.addOption(Option.builder()
+                .desc("File listing the files to index for --worksource list, one per line or NUL-separated " +
+                        "(find -print0). Use - to read the list from standard input.")
+                .longOpt(OPT_FILE_LIST_LONG)
+                .required(false)
+                .hasArg()
+                .build());
+        opts.addOption(Option.builder()
+                .desc("Order in which crawled files are extracted. Either crawl (as found), size (largest " +
+                        "first) or cost (slowest first, by the time each file took in the previous run). " +
+                        "Defaults to crawl.")
+                .longOpt(OPT_SCHEDULE_LONG)
+                .required(false)
+                .hasArg()
+                .build());
+        opts.addOption(Option.builder()
+                .desc("Number of crawled files ordered by the size and cost schedules before the heaviest is " +
+                        "extracted. Defaults to 0, which orders the whole crawl before extraction starts.")
+                .longOpt(OPT_SCHEDULE_WINDOW_LONG)
+                .required(false)
+                .hasArg()
+                .build());
+        opts.addOption(Option.builder()
+                .desc("One or more glob patterns for files to index. Patterns containing '/' match the path " +
+                        "relative to the input directory, others match the file name. Defaults to *.[pP][dD][fF].")
+                .longOpt(OPT_INCLUDE_LONG)
+                .required(false)
+                .hasArgs()
+                .build());
+        opts.addOption(Option.builder()
+                .desc("One or more glob patterns for files and directories to skip.")
+                .longOpt(OPT_EXCLUDE_LONG)
+                .required(false)
+                .hasArgs()
+                .build());
+        opts.addOption(Option.builder()
+                .desc("Text extraction parser profile. Either auto (detect document type) or fast (pdf only, " +
+                        "body text only). Defaults to auto.")
+                .longOpt(OPT_PARSER_PROFILE_LONG)
+                .required(false)
+                .hasArg()
+                .build());
+        opts.addOption(Option.builder()
+                .desc("Where text is parsed. Either local (on the extract threads) or fork (in a pool of child " +
+                        "JVMs, one per worker, with a per-file --parsetimeout and --parserheap). Files whose " +
+                        "forked parse times out or crashes are quarantined. Defaults to local.")
+                .longOpt(OPT_EXTRACT_MODE_LONG)
+                .required(false)
+                .hasArg()
+                .build());
+        opts.addOption(Option.builder()
+                .desc("Seconds a forked parse may run before its child JVM is stopped and the file is " +
+                        "quarantined. Defaults to 120.")
+                .longOpt(OPT_PARSE_TIMEOUT_LONG)
+                .required(false)
+                .hasArg()
+                .build());
+        opts.addOption(Option.builder()
+                .desc("Maximum heap in megabytes of each forked parser JVM. Defaults to 512.")
+                .longOpt(OPT_PARSER_HEAP_LONG)
+                .required(false)
+                .hasArg()
+                .build());
+        opts.addOption(Option.builder()
+                .desc("Directory (must exist) holding a cache of extracted text keyed by file content. " +
+                        "Cached text is reused instead of parsing unchanged files.")
+                .longOpt(OPT_EXTRACT_CACHE_LONG)
+                .required(false)
+                .hasArg()
+                .build());
+        opts.addOption(Option.builder()
+                .desc("Maximum size of the extract cache in megabytes. Least recently used entries are evicted " +
+                        "beyond this size. Defaults to 1024.")
+                .longOpt(OPT_EXTRACT_CACHE_SIZE_LONG)
+                .required(false)
+                .hasArg()
+                .build());
+        opts.addOption(Option.builder()
+                .desc("File of rules removing boilerplate such as headers, footers and page numbers from extracted " +
+                        "text, one 'literal <phrase>' or 'regex <pattern>' per line. Defaults to the built-in " +
+                        "rules, which remove the copyright line.")
+                .longOpt(OPT_CLEANUP_RULES_LONG)
+                .required(false)
+                .hasArg()
+                .build());
+        opts.addOption(Option.builder()
+                .desc("How write threads share the lucene index writer. Either locked (one document at a time), " +
+                        "concurrent (write threads add documents in parallel) or sharded (each write thread " +
+                        "builds its own index shard, merged at close). For concurrent and sharded, --writers " +
+                        "defaults to the number of workers. Defaults to locked.")
+                .longOpt(OPT_LUCENE_WRITE_MODE_LONG)
+                .required(false)
+                .hasArg()
+                .build());
+        opts.addOption(Option.builder()
+                .desc("Where sharded lucene writes keep each shard until it is merged. Either ram or disk " +
+                        "(system temp directory). Defaults to disk.")
+                .longOpt(OPT_SHARD_STORE_LONG)
+                .required(false)
+                .hasArg()
+                .build());
+        opts.addOption(Option.builder()
+                .desc("Force merge the lucene index down to this many segments before it is closed.")
+                .longOpt(OPT_FORCE_MERGE_LONG)
+                .required(false)
+                .hasArg()
+                .build());
+        opts.addOption(Option.builder()
+                .desc("Record the run with Java Flight Recorder, including an event for every file, to " +
+                        "indexer-<timestamp>.jfr in the output directory.")
+                .longOpt(OPT_JFR_LONG)
+                .hasArg(false)
+                .required(false)
+                .build());
+        opts.addOption(Option.builder()
+                .desc("Hash the content of every file before it is extracted and parse identical files only " +
+                        "once. Each copy is still indexed.")
+                .longOpt(OPT_DEDUP_LONG)
+                .hasArg(false)
+                .required(false)
+                .build());
+        opts.addOption(Option.builder()
+                .desc("Serve live progress metrics in Prometheus text format at http://127.0.0.1:<port>/metrics " +
+                        "while indexing. Disabled by default.")
+                .longOpt(OPT_METRICS_PORT_LONG)
+                .required(false)
+                .hasArg()
+                .build());
+        opts.addOption(Option.builder()
+                .desc("Estimated heap in megabytes that files being extracted, analyzed and written may use at " +
+                        "once. Files wait to be extracted until they fit. 0 disables the limit. Defaults to half " +
+                        "of the maximum heap.")
+                .longOpt(OPT_MEMORY_BUDGET_LONG)
+                .required(false)
+                .hasArg()
+                .build());
         return opts;
     }
 
@@ -0,0 +1,135 @@
+package org.dougmcintosh.index;
+
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Admission control for files in flight through the pipeline. Each file is weighed by an estimate
+ * of the heap it needs while it is parsed and its text is held, and a file is only admitted while
+ * the admitted weight stays within the budget. A file is always admitted when nothing else is in
+ * flight, so a file larger than the budget runs on its own rather than never.
+ * <p>
+ * The budget also backs off when the JVM reports heap pressure: whenever a heap pool is still over
+ * its collection usage threshold after a GC, the effective limit is halved. It is restored as
+ * files complete once the pools are back under their thresholds.
+ */
+final class MemoryBudget implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(MemoryBudget.class);
+    /**
+     * Heap used while parsing, per byte of source file.
+     */
+    private static final long PARSE_BYTES_PER_FILE_BYTE = 2;
+    /**
+     * Heap used per extracted character, which is buffered while parsing, copied into a string
+     * and then held until the file is written.
+     */
+    private static final long HEAP_BYTES_PER_CHAR = 4;
+    private static final double COLLECTION_THRESHOLD = 0.8;
+    private static final long MIN_TEXT_SAMPLE_BYTES = 1024 * 1024;
+    private final long budget;
+    private final List<MemoryPoolMXBean> watchedPools = new ArrayList<>();
+    private final NotificationListener listener = this::onNotification;
+    private long limit;
+    private long admitted = 0;
+    private int inFlight = 0;
+
+    /**
+     * @param budget maximum estimated heap bytes of the files in flight
+     */
+    MemoryBudget(long budget) {
+        Preconditions.checkState(budget >= 1, "Memory budget must be >= 1.");
+        this.budget = budget;
+        this.limit = budget;
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported() &&
+                    pool.getUsage().getMax() > 0) {
+                pool.setCollectionUsageThreshold((long) (pool.getUsage().getMax() * COLLECTION_THRESHOLD));
+                watchedPools.add(pool);
+            }
+        }
+        ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).addNotificationListener(listener, null, null);
+    }
+
+    /**
+     * @return estimated heap needed to extract and hold the text of a file of the provided size,
+     * using the characters extracted per source byte so far in this run
+     */
+    static long weigh(long fileSize) {
+        final long bytesRead = Metrics.getBytesRead();
+        final double charsPerByte = bytesRead >= MIN_TEXT_SAMPLE_BYTES ?
+            (double) Metrics.getCharsExtracted() / bytesRead : 1.0;
+        return fileSize * PARSE_BYTES_PER_FILE_BYTE + (long) (fileSize * charsPerByte * HEAP_BYTES_PER_CHAR);
+    }
+
+    /**
+     * Block until the provided weight fits within the current limit or nothing else is in flight.
+     */
+    synchronized void acquire(long weight) throws InterruptedException {
+        while (inFlight > 0 && admitted + weight > limit) {
+            wait();
+        }
+        admitted += weight;
+        inFlight++;
+    }
+
+    synchronized void release(long weight) {
+        admitted -= weight;
+        inFlight--;
+        if (limit < budget && !heapPressure()) {
+            limit = Math.min(budget, limit * 2);
+            logger.info("Heap pressure eased. Memory budget raised to {} MB.", limit / (1024 * 1024));
+        }
+        notifyAll();
+    }
+
+    synchronized long admittedBytes() {
+        return admitted;
+    }
+
+    synchronized long limitBytes() {
+        return limit;
+    }
+
+    private boolean heapPressure() {
+        for (MemoryPoolMXBean pool : watchedPools) {
+            if (pool.isCollectionUsageThresholdExceeded()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void onNotification(Notification notification, Object handback) {
+        if (!MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType())) {
+            return;
+        }
+        synchronized (this) {
+            limit = Math.max(1, limit / 2);
+            logger.warn("Heap usage after GC is over {}% of the heap. Memory budget lowered to {} MB.",
+                (int) (COLLECTION_THRESHOLD * 100), limit / (1024 * 1024));
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).removeNotificationListener(listener);
+        } catch (ListenerNotFoundException e) {
+            // already removed
+        }
+    }
+}
@@ -1,10 +1,82 @@
 package org.dougmcintosh.index;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.dougmcintosh.util.LatencyHistogram;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Counters and latency histograms for the current indexing run. Recording is cheap enough to be
+ * called for every file from every pipeline thread.
+ */
 public final class Metrics {
+    public static final String REPORT_FILE = "indexer-report.json";
+    static final int SLOWEST_FILES = 20;
     private static final AtomicLong fileCounter = new AtomicLong(0);
     private static final AtomicLong failureCounter = new AtomicLong(0);
+    private static final AtomicLong unchangedCounter = new AtomicLong(0);
+    private static final AtomicLong doneCounter = new AtomicLong(0);
+    private static final AtomicLong quarantinedCounter = new AtomicLong(0);
+    private static final AtomicLong deduplicatedCounter = new AtomicLong(0);
+    private static final LongAdder parseNanosSaved = new LongAdder();
+    private static final LongAdder bytesRead = new LongAdder();
+    private static final LongAdder charsExtracted = new LongAdder();
+    private static final LongAdder tokensEmitted = new LongAdder();
+    private static final Map<Timer, LatencyHistogram> histograms = new EnumMap<>(Timer.class);
+    private static final PriorityQueue<SlowFile> slowest =
+        new PriorityQueue<>(SLOWEST_FILES + 1, Comparator.comparingLong(slow -> slow.nanos));
+    private static volatile long slowestThreshold = 0;
+
+    static {
+        for (Timer timer : Timer.values()) {
+            histograms.put(timer, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * Timed steps of the indexing pipeline.
+     */
+    public enum Timer {
+        /**
+         * Listing and stat'ing a single crawled directory, excluding time blocked handing files to the pipeline.
+         */
+        CRAWL("crawl"),
+        EXTRACT("extract"),
+        TOKENIZE("tokenize"),
+        METADATA("metadata"),
+        /**
+         * Time a file spends waiting in a stage queue before a stage thread takes it.
+         */
+        QUEUE_WAIT("queueWait"),
+        /**
+         * Time a file waits for room in the memory budget before extraction.
+         */
+        ADMISSION_WAIT("admissionWait"),
+        SINK_WRITE("sinkWrite");
+
+        private final String label;
+
+        Timer(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+    }
 
     public static void fileSeen() {
         fileCounter.incrementAndGet();
@@ -14,6 +86,63 @@ public final class Metrics {
         failureCounter.incrementAndGet();
     }
 
+    public static void fileUnchanged() {
+        unchangedCounter.incrementAndGet();
+    }
+
+    public static void fileQuarantined() {
+        quarantinedCounter.incrementAndGet();
+    }
+
+    /**
+     * A file shared the extraction of another file with identical content.
+     *
+     * @param savedNanos time the shared extraction took, which this file didn't spend
+     */
+    public static void fileDeduplicated(long savedNanos) {
+        deduplicatedCounter.incrementAndGet();
+        parseNanosSaved.add(savedNanos);
+    }
+
+    /**
+     * A file has left the pipeline, whether it was indexed, skipped or failed.
+     */
+    public static void fileDone() {
+        doneCounter.incrementAndGet();
+    }
+
+    public static void bytesRead(long bytes) {
+        bytesRead.add(bytes);
+    }
+
+    public static void charsExtracted(long chars) {
+        charsExtracted.add(chars);
+    }
+
+    public static void tokensEmitted(long tokens) {
+        tokensEmitted.add(tokens);
+    }
+
+    public static void record(Timer timer, long nanos) {
+        histograms.get(timer).record(nanos);
+    }
+
+    /**
+     * Record the total time spent processing a single file, keeping the slowest files for the report.
+     */
+    public static void fileCompleted(File file, long nanos) {
+        if (nanos <= slowestThreshold) {
+            return;
+        }
+        synchronized (slowest) {
+            slowest.add(new SlowFile(file.getAbsolutePath(), nanos));
+            if (slowest.size() > SLOWEST_FILES) {
+                slowest.poll();
+                slowestThreshold = slowest.peek().nanos;
+            }
+        }
+    }
+
     public static long getFilesSeen() {
         return fileCounter.get();
     }
@@ -22,5 +151,117 @@ public final class Metrics {
         return failureCounter.get();
     }
 
+    public static long getFilesUnchanged() {
+        return unchangedCounter.get();
+    }
+
+    public static long getFilesQuarantined() {
+        return quarantinedCounter.get();
+    }
+
+    public static long getFilesDeduplicated() {
+        return deduplicatedCounter.get();
+    }
+
+    public static long getParseNanosSaved() {
+        return parseNanosSaved.sum();
+    }
+
+    public static long getFilesDone() {
+        return doneCounter.get();
+    }
+
+    public static long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    public static long getCharsExtracted() {
+        return charsExtracted.sum();
+    }
+
+    public static long getTokensEmitted() {
+        return tokensEmitted.sum();
+    }
+
+    public static LatencyHistogram.Snapshot snapshot(Timer timer) {
+        return histograms.get(timer).snapshot();
+    }
+
+    /**
+     * Write counters, per-step latency percentiles and the slowest files of the run to the provided
+     * file as JSON, replacing any previous report.
+     */
+    public static void writeReport(File reportFile, Instant started, long elapsedNanos) throws IOException {
+        final ObjectMapper mapper = new ObjectMapper();
+        final ObjectNode root = mapper.createObjectNode();
+        final double elapsedSeconds = elapsedNanos / 1e9;
+        root.put("started", started.toString());
+        root.put("elapsedSeconds", round(elapsedSeconds));
+
+        final ObjectNode files = root.putObject("files");
+        files.put("seen", getFilesSeen());
+        files.put("unchanged", getFilesUnchanged());
+        files.put("quarantined", getFilesQuarantined());
+        files.put("deduplicated", getFilesDeduplicated());
+        files.put("failures", getFailures());
+
+        final ObjectNode counters = root.putObject("counters");
+        counters.put("bytesRead", getBytesRead());
+        counters.put("charsExtracted", getCharsExtracted());
+        counters.put("tokensEmitted", getTokensEmitted());
+        counters.put("parseSecondsSaved", round(getParseNanosSaved() / 1e9));
+
+        final ObjectNode throughput = root.putObject("throughput");
+        throughput.put("filesPerSecond", elapsedSeconds > 0 ? round(getFilesSeen() / elapsedSeconds) : 0);
+        throughput.put("megabytesPerSecond",
+            elapsedSeconds > 0 ? round(getBytesRead() / (1024.0 * 1024.0) / elapsedSeconds) : 0);
+
+        final ObjectNode latency = root.putObject("latencyMs");
+        for (Timer timer : Timer.values()) {
+            final LatencyHistogram.Snapshot snapshot = snapshot(timer);
+            final ObjectNode node = latency.putObject(timer.label());
+            node.put("count", snapshot.count());
+            node.put("total", millis(snapshot.totalNanos()));
+            node.put("mean", millis(snapshot.meanNanos()));
+            node.put("p50", millis(snapshot.percentileNanos(50)));
+            node.put("p90", millis(snapshot.percentileNanos(90)));
+            node.put("p99", millis(snapshot.percentileNanos(99)));
+            node.put("p999", millis(snapshot.percentileNanos(99.9)));
+            node.put("max", millis(snapshot.maxNanos()));
+        }
+
+        final List<SlowFile> slowFiles;
+        synchronized (slowest) {
+            slowFiles = new ArrayList<>(slowest);
+        }
+        slowFiles.sort(Comparator.comparingLong((SlowFile slow) -> slow.nanos).reversed());
+        final ArrayNode slowNodes = root.putArray("slowestFiles");
+        for (SlowFile slow : slowFiles) {
+            slowNodes.addObject()
+                .put("file", slow.path)
+                .put("ms", millis(slow.nanos));
+        }
+
+        mapper.writerWithDefaultPrettyPrinter().writeValue(reportFile, root);
+    }
+
+    private static double millis(double nanos) {
+        return round(nanos / TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000.0) / 1000.0;
+    }
+
+    private static final class SlowFile {
+        private final String path;
+        private final long nanos;
+
+        private SlowFile(String path, long nanos) {
+            this.path = path;
+            this.nanos = nanos;
+        }
+    }
+
     private Metrics() {}
 }
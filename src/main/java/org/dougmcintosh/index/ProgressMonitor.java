@@ -0,0 +1,265 @@
+package org.dougmcintosh.index;
+
+import com.google.common.base.Preconditions;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.dougmcintosh.util.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Publishes live progress of an indexing run through a JMX MXBean and, when a port is provided, a
+ * Prometheus text format endpoint at {@code http://127.0.0.1:<port>/metrics}. Rates are averaged
+ * since the monitor started and the ETA assumes the remaining files complete at the same rate.
+ */
+class ProgressMonitor implements ProgressMonitorMXBean, Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(ProgressMonitor.class);
+    static final String OBJECT_NAME = "org.dougmcintosh.index:type=ProgressMonitor";
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private final long startNanos = System.nanoTime();
+    private final ObjectName objectName;
+    private final HttpServer server;
+    private final ExecutorService serverThread;
+    private volatile WorkManager workManager;
+    private volatile boolean crawlComplete = false;
+
+    private ProgressMonitor(int port) throws IOException {
+        Preconditions.checkState(port >= 0 && port <= 65535, "Metrics port must be between 0 and 65535.");
+        this.objectName = register();
+
+        if (port > 0) {
+            this.serverThread = Executors.newSingleThreadExecutor(r -> {
+                final Thread thread = new Thread(r, "metrics-http");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            this.server.createContext("/metrics", this::serve);
+            this.server.setExecutor(serverThread);
+            this.server.start();
+            logger.info("Serving metrics at http://{}:{}/metrics", InetAddress.getLoopbackAddress().getHostAddress(), port);
+        } else {
+            this.serverThread = null;
+            this.server = null;
+        }
+    }
+
+    /**
+     * @param port port for the metrics endpoint, or 0 to only register the MXBean
+     */
+    static ProgressMonitor start(int port) throws IOException {
+        return new ProgressMonitor(port);
+    }
+
+    /**
+     * Report queue depths and active workers of the provided pipeline.
+     */
+    void watch(WorkManager workManager) {
+        this.workManager = Preconditions.checkNotNull(workManager, "WorkManager is null.");
+    }
+
+    void crawlComplete() {
+        this.crawlComplete = true;
+    }
+
+    private ObjectName register() {
+        try {
+            final MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName name = new ObjectName(OBJECT_NAME);
+            if (mbeanServer.isRegistered(name)) {
+                mbeanServer.unregisterMBean(name);
+            }
+            mbeanServer.registerMBean(this, name);
+            return name;
+        } catch (JMException e) {
+            // monitoring is best effort and mustn't stop the run
+            logger.warn("Failed to register progress MXBean {}.", OBJECT_NAME, e);
+            return null;
+        }
+    }
+
+    @Override
+    public long getFilesSeen() {
+        return Metrics.getFilesSeen();
+    }
+
+    @Override
+    public long getFilesDone() {
+        return Metrics.getFilesDone();
+    }
+
+    @Override
+    public long getFailures() {
+        return Metrics.getFailures();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return Metrics.getBytesRead();
+    }
+
+    @Override
+    public boolean isCrawlComplete() {
+        return crawlComplete;
+    }
+
+    @Override
+    public Map<String, Integer> getQueueDepths() {
+        final WorkManager workManager = this.workManager;
+        return workManager != null ? workManager.queueDepths() : Collections.emptyMap();
+    }
+
+    @Override
+    public Map<String, Integer> getActiveWorkers() {
+        final WorkManager workManager = this.workManager;
+        return workManager != null ? workManager.activeWorkers() : Collections.emptyMap();
+    }
+
+    @Override
+    public double getFilesPerSecond() {
+        return Metrics.getFilesDone() / elapsedSeconds();
+    }
+
+    @Override
+    public double getMegabytesPerSecond() {
+        return Metrics.getBytesRead() / (1024.0 * 1024.0) / elapsedSeconds();
+    }
+
+    @Override
+    public double getEtaSeconds() {
+        final long done = Metrics.getFilesDone();
+        if (done == 0) {
+            return -1;
+        }
+        final long remaining = Math.max(0, Metrics.getFilesSeen() - done);
+        return remaining / (done / elapsedSeconds());
+    }
+
+    private double elapsedSeconds() {
+        return Math.max(1, System.nanoTime() - startNanos) / 1e9;
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        try {
+            final byte[] body = prometheusText().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (final OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * @return current metrics in the Prometheus text exposition format
+     */
+    String prometheusText() {
+        final StringBuilder text = new StringBuilder(4096);
+        metric(text, "indexer_files_seen_total", "counter", "Files queued by the crawl.", getFilesSeen());
+        metric(text, "indexer_files_done_total", "counter", "Files which have left the pipeline.", getFilesDone());
+        metric(text, "indexer_files_unchanged_total", "counter",
+            "Files skipped as unchanged by an incremental run.", Metrics.getFilesUnchanged());
+        metric(text, "indexer_files_quarantined_total", "counter",
+            "Files skipped or abandoned as quarantined.", Metrics.getFilesQuarantined());
+        metric(text, "indexer_files_deduplicated_total", "counter",
+            "Files that shared the extraction of a file with identical content.", Metrics.getFilesDeduplicated());
+        metric(text, "indexer_parse_seconds_saved_total", "counter",
+            "Parse time the deduplicated files didn't spend.", Metrics.getParseNanosSaved() / 1e9);
+        metric(text, "indexer_failures_total", "counter", "Files which failed to index.", getFailures());
+        metric(text, "indexer_bytes_read_total", "counter", "Bytes of source files extracted.", getBytesRead());
+        metric(text, "indexer_chars_extracted_total", "counter",
+            "Characters of text extracted.", Metrics.getCharsExtracted());
+        metric(text, "indexer_tokens_emitted_total", "counter",
+            "Keyword tokens emitted by the analyzer.", Metrics.getTokensEmitted());
+        metric(text, "indexer_crawl_complete", "gauge",
+            "1 once every input directory has been crawled.", crawlComplete ? 1 : 0);
+        metric(text, "indexer_files_per_second", "gauge",
+            "Files completed per second since the run started.", getFilesPerSecond());
+        metric(text, "indexer_megabytes_per_second", "gauge",
+            "Megabytes extracted per second since the run started.", getMegabytesPerSecond());
+        metric(text, "indexer_eta_seconds", "gauge",
+            "Estimated seconds until every crawled file is done, -1 if unknown.", getEtaSeconds());
+
+        final WorkManager workManager = this.workManager;
+        if (workManager != null) {
+            metric(text, "indexer_memory_admitted_bytes", "gauge",
+                "Estimated heap of the files admitted by the memory budget.", workManager.admittedBytes());
+            metric(text, "indexer_memory_limit_bytes", "gauge",
+                "Current memory budget limit, lowered under heap pressure.", workManager.admissionLimitBytes());
+        }
+
+        header(text, "indexer_queue_depth", "gauge", "Files waiting in each stage queue.");
+        getQueueDepths().forEach((stage, depth) ->
+            sample(text, "indexer_queue_depth{stage=\"" + stage + "\"}", depth));
+        header(text, "indexer_active_workers", "gauge", "Threads processing a file in each stage.");
+        getActiveWorkers().forEach((stage, active) ->
+            sample(text, "indexer_active_workers{stage=\"" + stage + "\"}", active));
+
+        header(text, "indexer_step_latency_seconds", "summary", "Latency of each step of the pipeline.");
+        for (Metrics.Timer timer : Metrics.Timer.values()) {
+            final LatencyHistogram.Snapshot snapshot = Metrics.snapshot(timer);
+            final String labels = "step=\"" + timer.label() + "\"";
+            for (double quantile : QUANTILES) {
+                sample(text, "indexer_step_latency_seconds{" + labels + ",quantile=\"" + quantile + "\"}",
+                    snapshot.percentileNanos(quantile * 100) / 1e9);
+            }
+            sample(text, "indexer_step_latency_seconds_sum{" + labels + "}", snapshot.totalNanos() / 1e9);
+            sample(text, "indexer_step_latency_seconds_count{" + labels + "}", snapshot.count());
+        }
+        return text.toString();
+    }
+
+    private static void metric(StringBuilder text, String name, String type, String help, double value) {
+        header(text, name, type, help);
+        sample(text, name, value);
+    }
+
+    private static void header(StringBuilder text, String name, String type, String help) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder text, String name, double value) {
+        text.append(name).append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            text.append((long) value);
+        } else {
+            text.append(String.format(Locale.ROOT, "%.6g", value));
+        }
+        text.append('\n');
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+            serverThread.shutdown();
+        }
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException e) {
+                logger.warn("Failed to unregister progress MXBean {}.", OBJECT_NAME, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package org.dougmcintosh.index;
+
+import java.util.Map;
+
+/**
+ * Live progress of an indexing run, registered with the platform MBean server as
+ * {@value ProgressMonitor#OBJECT_NAME}.
+ */
+public interface ProgressMonitorMXBean {
+    long getFilesSeen();
+
+    long getFilesDone();
+
+    long getFailures();
+
+    long getBytesRead();
+
+    boolean isCrawlComplete();
+
+    Map<String, Integer> getQueueDepths();
+
+    Map<String, Integer> getActiveWorkers();
+
+    double getFilesPerSecond();
+
+    double getMegabytesPerSecond();
+
+    /**
+     * @return estimated seconds until every crawled file has left the pipeline, or -1 until a file
+     * has completed. Only counts files crawled so far while the crawl is still running.
+     */
+    double getEtaSeconds();
+}
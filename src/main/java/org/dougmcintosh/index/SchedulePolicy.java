@@ -0,0 +1,22 @@
+package org.dougmcintosh.index;
+
+/**
+ * Order in which crawled files are handed to the extract stage.
+ */
+public enum SchedulePolicy {
+    /**
+     * Files are extracted in the order they are crawled.
+     */
+    CRAWL,
+
+    /**
+     * Pending files are extracted largest first.
+     */
+    SIZE,
+
+    /**
+     * Pending files are extracted most expensive first, by the processing time recorded for each
+     * file by the previous run, or estimated from its size.
+     */
+    COST
+}
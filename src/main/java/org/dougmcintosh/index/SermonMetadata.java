@@ -1,148 +1,263 @@
 package org.dougmcintosh.index;
 
 import com.fasterxml.jackson.core.JsonFactory;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.google.common.base.Preconditions;
-import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.time.LocalDate;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Set;
 
+/**
+ * Sermon metadata from the external metadata file, keyed by the manuscript path relative to the
+ * site root (pdf/...). Loading publishes an immutable snapshot, so lookups from any number of
+ * pipeline threads share nothing mutable and each caller gets its own entry builder.
+ */
 public class SermonMetadata {
     private static final Logger logger = LoggerFactory.getLogger(SermonMetadata.class);
-    private static final Map<String, IndexEntry.Builder> indexEntries = new LinkedHashMap<>();
-    private static volatile boolean initialized = false;
+    private static final String PDF_DIR = "pdf/";
+    private static volatile Map<String, Sermon> sermons = null;
 
     public static void load(final File sermonMetadataFile) throws IOException {
-        final JsonFactory factory = new JsonFactory();
-        final ObjectMapper mapper = new ObjectMapper(factory);
-
-        try (final FileInputStream stream = new FileInputStream(sermonMetadataFile)) {
-            final JsonNode rootNode = mapper.readTree(stream);
-            final Iterator<Map.Entry<String, JsonNode>> fieldsIt = rootNode.fields();
-            while (fieldsIt.hasNext()) {
-                Map.Entry<String, JsonNode> entry = fieldsIt.next();
-                String categoryName = entry.getKey();
-                JsonNode category = entry.getValue();
-                processCategory(categoryName, category);
+        final Map<String, Sermon> loaded = new HashMap<>();
+
+        try (final JsonParser parser = new JsonFactory().createParser(sermonMetadataFile)) {
+            expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String categoryName = parser.getCurrentName();
+                processCategory(parser, categoryName, loaded);
             }
         }
 
         logger.info("Completed ingest of external metadata file. Found " +
-            indexEntries.size() + " entries with manuscripts.");
+            loaded.size() + " entries with manuscripts.");
 
-        initialized = true;
+        sermons = Collections.unmodifiableMap(loaded);
     }
 
+    /**
+     * @return a new entry builder populated with the metadata of the provided manuscript, or null if
+     * the metadata file has no entry for it
+     */
     public static IndexEntry.Builder entryBuilderForManuscript(final File pdf) {
-        Preconditions.checkState(initialized, "SermonMetadata has not been initialized.");
+        final Map<String, Sermon> sermons = SermonMetadata.sermons;
+        Preconditions.checkState(sermons != null, "SermonMetadata has not been initialized.");
         Preconditions.checkNotNull(pdf, "Provided manuscript file is null.");
-        Preconditions.checkState(pdf.isFile(), "Provided manuscript file does not exist: " + pdf.getAbsolutePath());
         final String path = relativePathFromManuscriptFile(pdf);
-        final IndexEntry.Builder bldr = indexEntries.get(path);
+        final Sermon sermon = path == null ? null : sermons.get(path);
 
-        if (bldr == null) {
+        if (sermon == null) {
             logger.warn("No entry builder exists for path: {}", path);
+            return null;
         }
 
-        return bldr;
+        return sermon.entryBuilder();
+    }
+
+    /**
+     * @return paths of every manuscript in the metadata file, relative to the site root (pdf/...)
+     */
+    public static Set<String> manuscriptPaths() {
+        final Map<String, Sermon> sermons = SermonMetadata.sermons;
+        Preconditions.checkState(sermons != null, "SermonMetadata has not been initialized.");
+        return sermons.keySet();
     }
 
-    private static final Pattern REL_FILE_PATTERN = Pattern.compile("(?i).*/?(pdf/.+)");
-    private static String relativePathFromManuscriptFile(final File pdf) {
+    /**
+     * @return the manuscript path from its last pdf/ directory (case insensitive) onwards, or null
+     * if the path has no pdf/ directory
+     */
+    static String relativePathFromManuscriptFile(final File pdf) {
         Preconditions.checkNotNull(pdf, "Manuscript is null.");
-        final Matcher matcher = REL_FILE_PATTERN.matcher(pdf.getAbsolutePath());
-        String relativePath = null;
-        if (matcher.find()) {
-            relativePath = matcher.group(1);
-            Preconditions.checkState(StringUtils.isNotBlank(relativePath),
-                "No relative path could be resolved from \"" + pdf.getAbsolutePath() + "\"");
+        final String path = pdf.getAbsolutePath();
+        for (int i = path.length() - PDF_DIR.length() - 1; i >= 0; i--) {
+            if (path.regionMatches(true, i, PDF_DIR, 0, PDF_DIR.length())) {
+                return path.substring(i);
+            }
         }
-        return relativePath;
+        return null;
     }
 
     private static void processCategory(
+        final JsonParser parser,
         final String categoryName,
-        final JsonNode node) {
-
-        final Iterator<Map.Entry<String, JsonNode>> fieldsIt = node.fields();
-        while (fieldsIt.hasNext()) {
-            Map.Entry<String, JsonNode> entry = fieldsIt.next();
-            JsonNode subCategory = entry.getValue();
-            if (entry.getKey().equals("subCategories")) {
-                processSubCategories(categoryName, entry.getValue());
+        final Map<String, Sermon> loaded) throws IOException {
+
+        expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            parser.nextToken();
+            if (field.equals("subCategories")) {
+                processSubCategories(parser, categoryName, loaded);
+            } else {
+                parser.skipChildren();
             }
         }
     }
 
     private static void processSubCategories(
-        String categoryName,
-        final JsonNode node) {
+        final JsonParser parser,
+        final String categoryName,
+        final Map<String, Sermon> loaded) throws IOException {
 
-        Iterator<Map.Entry<String, JsonNode>> fieldsIt = node.fields();
-        while (fieldsIt.hasNext()) {
-            Map.Entry<String, JsonNode> entry = fieldsIt.next();
-            final String subcategoryName = entry.getKey();
+        expect(parser, parser.currentToken(), JsonToken.START_OBJECT);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String subcategoryName = parser.getCurrentName();
             logger.debug("processing subcategory " + subcategoryName);
-            JsonNode subCategory = entry.getValue();
-            JsonNode seriesArray = subCategory.get("seriesCollection");
-            seriesArray.forEach(series -> {
-                processSeries(categoryName, subcategoryName, series);
-            });
+            expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.getCurrentName();
+                parser.nextToken();
+                if (field.equals("seriesCollection")) {
+                    expect(parser, parser.currentToken(), JsonToken.START_ARRAY);
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        processSeries(parser, new Series(categoryName, subcategoryName), loaded);
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
         }
     }
 
     private static void processSeries(
-        final String categoryName,
-        final String subcategoryName,
-        final JsonNode node) {
-        String seriesCode = node.get("seriesCode").textValue();
-        String seriesTitle = node.get("seriesTitle").textValue();
-        JsonNode sermons = node.get("sermons");
-        Preconditions.checkState(sermons.isArray(), "sermons node is not an array.");
-        sermons.forEach(sermon -> {
-            final JsonNode pdfNode = sermon.get("pdf");
-            final String pdf = pdfNode == null ? "" : pdfNode.asText();
-            final JsonNode audioNode = sermon.get("audio");
-            final String audio = audioNode == null ? "" : audioNode.asText();
-            final JsonNode titleNode = sermon.get("title");
-            final String title = titleNode == null ? "" : titleNode.asText();
-            final JsonNode dateNode = sermon.get("date");
-            final String date = dateNode == null ? "" : dateNode.asText();
-            final JsonNode passageNode = sermon.get("passage");
-            final String passage = passageNode == null ? "" : passageNode.asText();
-
-            if (pdfNode != null) {
-                logger.debug(categoryName + "/" + subcategoryName + "/" + seriesCode + "/" + seriesTitle + "/" +
-                    pdf + "/" + audio + "/" + title);
-
-                IndexEntry.Builder builder = IndexEntry.builder()
-                    .category(categoryName)
-                    .subCategory(subcategoryName)
-                    .seriesCode(seriesCode)
-                    .seriesTitle(seriesTitle)
-                    .pdfRelativePath(pdf)
-                    .audio(audio)
-                    .sermonTitle(title)
-                    .passage(passage);
-
-                if (!date.isEmpty()) {
-                    builder.date(LocalDate.parse(date));
+        final JsonParser parser,
+        final Series series,
+        final Map<String, Sermon> loaded) throws IOException {
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            final JsonToken token = parser.nextToken();
+            if (field.equals("seriesCode")) {
+                series.seriesCode = token == JsonToken.VALUE_STRING ? parser.getText() : null;
+            } else if (field.equals("seriesTitle")) {
+                series.seriesTitle = token == JsonToken.VALUE_STRING ? parser.getText() : null;
+            } else if (field.equals("sermons")) {
+                Preconditions.checkState(token == JsonToken.START_ARRAY, "sermons node is not an array.");
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    processSermon(parser, series, loaded);
                 }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
 
-                IndexEntry.Builder replaced = indexEntries.put(pdf, builder);
-                Preconditions.checkState(replaced == null, "Duplicate pdf entry: " + pdf);
+    private static void processSermon(
+        final JsonParser parser,
+        final Series series,
+        final Map<String, Sermon> loaded) throws IOException {
+
+        String pdf = null;
+        String audio = "";
+        String title = "";
+        String date = "";
+        String passage = "";
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "pdf":
+                    pdf = scalarText(parser);
+                    break;
+                case "audio":
+                    audio = scalarText(parser);
+                    break;
+                case "title":
+                    title = scalarText(parser);
+                    break;
+                case "date":
+                    date = scalarText(parser);
+                    break;
+                case "passage":
+                    passage = scalarText(parser);
+                    break;
+                default:
+                    parser.skipChildren();
             }
-        });
+        }
+
+        if (pdf != null) {
+            logger.debug(series.categoryName + "/" + series.subcategoryName + "/" + series.seriesCode + "/" +
+                series.seriesTitle + "/" + pdf + "/" + audio + "/" + title);
+
+            final Sermon sermon = new Sermon(series, pdf, audio, title, passage,
+                date.isEmpty() ? null : LocalDate.parse(date));
+            final Sermon replaced = loaded.put(pdf, sermon);
+            Preconditions.checkState(replaced == null, "Duplicate pdf entry: " + pdf);
+        }
+    }
+
+    /**
+     * @return the text of the current scalar value, or an empty string for a null or structured value
+     */
+    private static String scalarText(final JsonParser parser) throws IOException {
+        if (parser.currentToken().isStructStart()) {
+            parser.skipChildren();
+            return "";
+        }
+        final String text = parser.getValueAsString();
+        return text == null ? "" : text;
+    }
+
+    private static void expect(final JsonParser parser, final JsonToken actual, final JsonToken expected) {
+        Preconditions.checkState(actual == expected, "Expected %s but found %s in sermon metadata at %s.",
+            expected, actual, parser.getCurrentLocation());
+    }
+
+    /**
+     * Fields shared by every sermon of a series, held once rather than copied into each sermon. The
+     * series code and title are set as the series is parsed and never change after loading.
+     */
+    private static final class Series {
+        private final String categoryName;
+        private final String subcategoryName;
+        private String seriesCode;
+        private String seriesTitle;
+
+        private Series(String categoryName, String subcategoryName) {
+            this.categoryName = categoryName;
+            this.subcategoryName = subcategoryName;
+        }
+    }
+
+    private static final class Sermon {
+        private final Series series;
+        private final String pdfRelativePath;
+        private final String audio;
+        private final String title;
+        private final String passage;
+        private final LocalDate date;
+
+        private Sermon(Series series, String pdfRelativePath, String audio, String title, String passage,
+                       LocalDate date) {
+            this.series = series;
+            this.pdfRelativePath = pdfRelativePath;
+            this.audio = audio;
+            this.title = title;
+            this.passage = passage;
+            this.date = date;
+        }
+
+        private IndexEntry.Builder entryBuilder() {
+            return IndexEntry.builder()
+                .category(series.categoryName)
+                .subCategory(series.subcategoryName)
+                .seriesCode(series.seriesCode)
+                .seriesTitle(series.seriesTitle)
+                .pdfRelativePath(pdfRelativePath)
+                .audio(audio)
+                .sermonTitle(title)
+                .passage(passage)
+                .date(date);
+        }
     }
 }
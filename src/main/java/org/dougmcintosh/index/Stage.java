@@ -0,0 +1,178 @@
+package org.dougmcintosh.index;
+
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A single step of the indexing pipeline. A fixed number of threads take work from a bounded
+ * queue, process it and hand anything the task accepts to the next stage. A full queue blocks
+ * {@link #submit(Object)}, so a slow stage applies backpressure to everything upstream of it
+ * rather than letting work pile up in memory.
+ *
+ * @param <T> type of work handed between stages
+ */
+final class Stage<T> implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(Stage.class);
+    private static final Object END_OF_WORK = new Object();
+    private final String name;
+    private final int threads;
+    private final BlockingQueue<Object> queue;
+    private final Predicate<T> task;
+    private final Stage<T> next;
+    private final Consumer<T> completion;
+    private final Thread.UncaughtExceptionHandler exceptionHandler;
+    private final ExecutorService threadPool;
+    private final AtomicInteger active = new AtomicInteger(0);
+
+    /**
+     * @param name             stage name used for thread names and logging
+     * @param threads          number of threads consuming the stage queue
+     * @param capacity         maximum number of items waiting in the stage queue
+     * @param task             processes a single item, returning true if it should be handed to the next stage
+     * @param next             downstream stage or null if this is the last stage
+     * @param completion       notified of work leaving the pipeline from this stage, whether it was
+     *                         finished, dropped by the task or failed
+     * @param exceptionHandler notified of any exception thrown by the task; the stage thread keeps running
+     */
+    Stage(String name,
+          int threads,
+          int capacity,
+          Predicate<T> task,
+          Stage<T> next,
+          Consumer<T> completion,
+          Thread.UncaughtExceptionHandler exceptionHandler) {
+        Preconditions.checkState(threads >= 1, "Stage threads must be >= 1.");
+        Preconditions.checkState(capacity >= 1, "Stage queue capacity must be >= 1.");
+        this.name = Preconditions.checkNotNull(name, "Stage name is null.");
+        this.threads = threads;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.task = Preconditions.checkNotNull(task, "Stage task is null.");
+        this.next = next;
+        this.completion = Preconditions.checkNotNull(completion, "Completion is null.");
+        this.exceptionHandler = Preconditions.checkNotNull(exceptionHandler, "Exception handler is null.");
+
+        final AtomicInteger threadIdx = new AtomicInteger(0);
+        this.threadPool = Executors.newFixedThreadPool(threads,
+            r -> new Thread(r, String.format("index-%s-%d", name, threadIdx.incrementAndGet())));
+
+        for (int i = 0; i < threads; i++) {
+            threadPool.execute(this::consume);
+        }
+    }
+
+    /**
+     * Queue work for this stage, blocking while the stage queue is full.
+     */
+    void submit(T work) throws InterruptedException {
+        queue.put(new Queued(Preconditions.checkNotNull(work, "Work is null.")));
+    }
+
+    int queueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * @return number of stage threads currently processing work
+     */
+    int activeThreads() {
+        return active.get();
+    }
+
+    Stage<T> getNext() {
+        return next;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void consume() {
+        try {
+            while (true) {
+                final Object item = queue.take();
+                if (item == END_OF_WORK) {
+                    return;
+                }
+                final Queued queued = (Queued) item;
+                Metrics.record(Metrics.Timer.QUEUE_WAIT, System.nanoTime() - queued.queuedAt);
+                final Object work = queued.work;
+
+                active.incrementAndGet();
+                try {
+                    if (task.test((T) work) && next != null) {
+                        next.submit((T) work);
+                    } else {
+                        complete((T) work);
+                    }
+                } catch (InterruptedException e) {
+                    throw e;
+                } catch (Throwable t) {
+                    complete((T) work);
+                    exceptionHandler.uncaughtException(Thread.currentThread(), t);
+                } finally {
+                    active.decrementAndGet();
+                }
+            }
+        } catch (InterruptedException e) {
+            logger.error("Stage {} interrupted while awaiting work.", name, e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void complete(T work) {
+        Metrics.fileDone();
+        completion.accept(work);
+    }
+
+    /**
+     * Let the stage drain its queue, wait for its threads to finish and then close the next stage.
+     */
+    @Override
+    public void close() {
+        if (!threadPool.isShutdown()) {
+            try {
+                for (int i = 0; i < threads; i++) {
+                    queue.put(END_OF_WORK);
+                }
+                threadPool.shutdown();
+
+                logger.info("Awaiting completion of {} stage.", name);
+                threadPool.awaitTermination(1l, TimeUnit.HOURS);
+            } catch (InterruptedException e) {
+                logger.error("Interrupted while awaiting completion of {} stage.", name, e);
+                threadPool.shutdownNow();
+                Thread.currentThread().interrupt();
+                throw new IndexingException(e);
+            } finally {
+                if (next != null) {
+                    next.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Work along with the time it was queued.
+     */
+    private static final class Queued {
+        private final Object work;
+        private final long queuedAt;
+
+        private Queued(Object work) {
+            this.work = work;
+            this.queuedAt = System.nanoTime();
+        }
+    }
+}
@@ -7,79 +7,298 @@ import org.slf4j.LoggerFactory;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Runs crawled files through the extract, analyze and write stages of the indexing pipeline.
+ * Each stage has its own thread count and a bounded hand-off queue so that memory use stays
+ * bounded and a slow stage throttles the stages feeding it.
+ */
 public class WorkManager implements Closeable {
     private static final Logger logger = LoggerFactory.getLogger(WorkManager.class);
-    private ExecutorService threadPool;
-    private WorkerFactory workerFactory;
-    private AtomicLong failureCount;
+    private final WorkerFactory workerFactory;
+    private final AtomicLong failureCount;
+    private final Stage<WorkerFactory.Worker> extractStage;
+    private final SchedulePolicy schedulePolicy;
+    private final int scheduleWindow;
+    private final PriorityQueue<Pending> pending;
+    private final MemoryBudget memoryBudget;
 
-    public WorkManager(int workers, WorkerFactory workerFactory) {
-        Preconditions.checkState(workers >= 1, "Workers must be >= 1.");
+    private WorkManager(int extractors,
+                        int analyzers,
+                        int writers,
+                        int queueCapacity,
+                        SchedulePolicy schedulePolicy,
+                        int scheduleWindow,
+                        long memoryBudgetBytes,
+                        WorkerFactory workerFactory) {
+        Preconditions.checkState(extractors >= 1, "Workers must be >= 1.");
+        Preconditions.checkState(analyzers >= 1, "Analyzers must be >= 1.");
+        Preconditions.checkState(writers >= 1, "Writers must be >= 1.");
+        Preconditions.checkState(scheduleWindow >= 0, "Schedule window must be >= 0.");
+        Preconditions.checkState(memoryBudgetBytes >= 0, "Memory budget must be >= 0.");
         this.failureCount = new AtomicLong(0);
         this.workerFactory = Preconditions.checkNotNull(workerFactory, "WorkerFactory is null.");
-        this.threadPool = Executors.newFixedThreadPool(workers, new ThreadFactory() {
-            private AtomicInteger workerIdx = new AtomicInteger(0);
-            private Thread.UncaughtExceptionHandler exceptionHandler = new Thread.UncaughtExceptionHandler() {
-                @Override
-                public void uncaughtException(Thread t, Throwable e) {
-                    failureCount.incrementAndGet();
-                    Metrics.failure();
-
-                    if (e instanceof IndexingException) {
-                        IndexingException ex = (IndexingException) e;
-                        if (ex.getTarget() != null) {
-                            logger.error("Uncaught exception while indexing {}", ex.getTarget().getAbsolutePath(), ex);
-                            return;
-                        }
-                    }
-                    logger.error("Uncaught exception in worker {}", t.getName(), e);
-                }
-            };
+        this.schedulePolicy = Preconditions.checkNotNull(schedulePolicy, "Schedule policy is null.");
+        this.scheduleWindow = scheduleWindow;
+        this.memoryBudget = memoryBudgetBytes > 0 ? new MemoryBudget(memoryBudgetBytes) : null;
+        // heaviest first, ties in path order so the schedule doesn't depend on crawl thread timing
+        this.pending = new PriorityQueue<>(Comparator.comparingLong((Pending p) -> p.weight).reversed()
+            .thenComparing(p -> p.file));
+
+        final Thread.UncaughtExceptionHandler exceptionHandler = (t, e) -> {
+            failureCount.incrementAndGet();
+            Metrics.failure();
 
-            @Override
-            public Thread newThread(Runnable r) {
-                Thread t = new Thread(r, String.format("index-worker-%d", workerIdx.incrementAndGet()));
-                t.setUncaughtExceptionHandler(exceptionHandler);
-                return t;
+            if (e instanceof IndexingException) {
+                IndexingException ex = (IndexingException) e;
+                if (ex.getTarget() != null) {
+                    logger.error("Uncaught exception while indexing {}", ex.getTarget().getAbsolutePath(), ex);
+                    return;
+                }
             }
-        });
+            logger.error("Uncaught exception in worker {}", t.getName(), e);
+        };
+
+        final Stage<WorkerFactory.Worker> writeStage = new Stage<>(
+            "write", writers, queueCapacity, worker -> {
+                worker.writeStage();
+                return false;
+            }, null, this::release, exceptionHandler);
+        final Stage<WorkerFactory.Worker> analyzeStage = new Stage<>(
+            "analyze", analyzers, queueCapacity, WorkerFactory.Worker::analyzeStage, writeStage, this::release,
+            exceptionHandler);
+        this.extractStage = new Stage<>(
+            "extract", extractors, queueCapacity, this::admitAndExtract, analyzeStage, this::release, exceptionHandler);
     }
 
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Hand a file to the extract stage, blocking while the extract queue is full.
+     */
     public void queueWork(File work) {
-        Metrics.fileSeen();
-        logger.debug("Queueing file {}", work.getAbsolutePath());
-        threadPool.execute(workerFactory.newWorker(work));
+        queueWork(work, schedulePolicy == SchedulePolicy.CRAWL ? 0 : work.length());
     }
 
-    @Override
-    public void close() throws IOException {
-        if (!threadPool.isShutdown()) {
-            threadPool.shutdown();
+    /**
+     * Hand a file of the provided size to the extract stage or, unless scheduling in crawl order, to
+     * the pending files. Once more than the schedule window is pending, the heaviest pending file is
+     * handed to the extract stage, blocking while the extract queue is full. With no window, files
+     * are held until the crawl is done.
+     */
+    public void queueWork(File work, long size) {
+        Metrics.fileSeen();
+        if (schedulePolicy == SchedulePolicy.CRAWL) {
+            submit(work);
+            return;
+        }
 
-            logger.info("Awaiting thread pool shutdown.");
+        final long weight = schedulePolicy == SchedulePolicy.COST ?
+            workerFactory.costHistory().estimateNanos(work, size) : size;
+        final Pending next;
+        synchronized (pending) {
+            pending.add(new Pending(work, weight));
+            next = scheduleWindow > 0 && pending.size() > scheduleWindow ? pending.poll() : null;
+        }
+        if (next != null) {
+            submit(next.file);
+        }
+    }
 
+    /**
+     * Wait for the file to fit in the memory budget, then extract it.
+     */
+    private boolean admitAndExtract(WorkerFactory.Worker worker) {
+        if (memoryBudget != null) {
+            final long weight = MemoryBudget.weigh(worker.sourceFile.length());
+            final long start = System.nanoTime();
             try {
-                threadPool.awaitTermination(1l, TimeUnit.HOURS);
+                memoryBudget.acquire(weight);
             } catch (InterruptedException e) {
-                logger.error("Thread pool interrupted while awaiting worker completion.", e);
                 Thread.currentThread().interrupt();
-                throw new IndexingException(e);
-            } finally {
-                this.workerFactory.close();
+                throw new IndexingException(e, worker.sourceFile);
             }
+            worker.admittedBytes = weight;
+            Metrics.record(Metrics.Timer.ADMISSION_WAIT, System.nanoTime() - start);
+        }
+        return worker.extractStage();
+    }
 
-            if (failureCount.get() > 0) {
-                throw new IndexingException(failureCount.get() + " worker thread(s) failed. Check logs for details.");
+    private void release(WorkerFactory.Worker worker) {
+        if (worker.admittedBytes > 0) {
+            memoryBudget.release(worker.admittedBytes);
+            worker.admittedBytes = 0;
+        }
+    }
+
+    /**
+     * @return estimated heap bytes of the files admitted by the memory budget, or 0 if there's no budget
+     */
+    public long admittedBytes() {
+        return memoryBudget != null ? memoryBudget.admittedBytes() : 0;
+    }
+
+    /**
+     * @return current limit of the memory budget, lowered under heap pressure, or 0 if there's no budget
+     */
+    public long admissionLimitBytes() {
+        return memoryBudget != null ? memoryBudget.limitBytes() : 0;
+    }
+
+    /**
+     * Hand every pending file to the extract stage, heaviest first.
+     */
+    private void drainPending() {
+        while (true) {
+            final Pending next;
+            synchronized (pending) {
+                next = pending.poll();
             }
+            if (next == null) {
+                return;
+            }
+            submit(next.file);
+        }
+    }
+
+    private void submit(File work) {
+        try {
+            extractStage.submit(workerFactory.newWorker(work));
+        } catch (InterruptedException e) {
+            logger.error("Interrupted while queueing file {}", work.getAbsolutePath(), e);
+            Thread.currentThread().interrupt();
+            throw new IndexingException(e, work);
+        }
+    }
+
+    /**
+     * @return number of files waiting in each stage queue, in pipeline order, after the files held
+     * back by the schedule policy
+     */
+    public Map<String, Integer> queueDepths() {
+        final Map<String, Integer> depths = new LinkedHashMap<>();
+        if (schedulePolicy != SchedulePolicy.CRAWL) {
+            synchronized (pending) {
+                depths.put("schedule", pending.size());
+            }
+        }
+        for (Stage<WorkerFactory.Worker> stage = extractStage; stage != null; stage = stage.getNext()) {
+            depths.put(stage.getName(), stage.queueDepth());
+        }
+        return depths;
+    }
+
+    /**
+     * @return number of threads processing a file in each stage, in pipeline order
+     */
+    public Map<String, Integer> activeWorkers() {
+        final Map<String, Integer> active = new LinkedHashMap<>();
+        for (Stage<WorkerFactory.Worker> stage = extractStage; stage != null; stage = stage.getNext()) {
+            active.put(stage.getName(), stage.activeThreads());
+        }
+        return active;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            drainPending();
+            extractStage.close();
+        } finally {
+            if (memoryBudget != null) {
+                memoryBudget.close();
+            }
+            this.workerFactory.close();
+        }
+
+        if (failureCount.get() > 0) {
+            throw new IndexingException(failureCount.get() + " worker thread(s) failed. Check logs for details.");
+        }
+
+        logger.info("Pipeline shutdown complete.");
+    }
+
+    public static class Builder {
+        private int extractors = 1;
+        private int analyzers = 1;
+        private int writers = 1;
+        private int queueCapacity = 16;
+        private SchedulePolicy schedulePolicy = SchedulePolicy.CRAWL;
+        private int scheduleWindow = 0;
+        private long memoryBudgetBytes = 0;
+        private WorkerFactory workerFactory;
+
+        private Builder() {
+        }
+
+        public Builder extractors(int extractors) {
+            this.extractors = extractors;
+            return this;
+        }
+
+        public Builder analyzers(int analyzers) {
+            this.analyzers = analyzers;
+            return this;
+        }
+
+        public Builder writers(int writers) {
+            this.writers = writers;
+            return this;
+        }
+
+        public Builder queueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        public Builder schedulePolicy(SchedulePolicy schedulePolicy) {
+            this.schedulePolicy = schedulePolicy;
+            return this;
+        }
+
+        /**
+         * @param scheduleWindow number of crawled files held back and ordered by the schedule policy,
+         *                       or 0 to hold every file until the crawl is done
+         */
+        public Builder scheduleWindow(int scheduleWindow) {
+            this.scheduleWindow = scheduleWindow;
+            return this;
+        }
+
+        /**
+         * @param memoryBudgetBytes maximum estimated heap bytes of files in flight, or 0 for no limit
+         */
+        public Builder memoryBudgetBytes(long memoryBudgetBytes) {
+            this.memoryBudgetBytes = memoryBudgetBytes;
+            return this;
+        }
+
+        public Builder workerFactory(WorkerFactory workerFactory) {
+            this.workerFactory = Preconditions.checkNotNull(workerFactory, "WorkerFactory is null.");
+            return this;
+        }
+
+        public WorkManager build() {
+            return new WorkManager(
+                extractors, analyzers, writers, queueCapacity, schedulePolicy, scheduleWindow, memoryBudgetBytes,
+                workerFactory);
+        }
+    }
+
+    private static final class Pending {
+        private final File file;
+        private final long weight;
 
-            logger.info("Thread pool shutdown complete.");
+        private Pending(File file, long weight) {
+            this.file = file;
+            this.weight = weight;
         }
     }
 }
@@ -1,12 +1,29 @@
 package org.dougmcintosh.index;
 
 import com.google.common.base.Preconditions;
-import com.google.common.base.Stopwatch;
+import com.google.common.base.Throwables;
+import org.dougmcintosh.index.crawl.WorkSourceType;
+import org.dougmcintosh.index.extract.CleanupRules;
+import org.dougmcintosh.index.extract.ExtractDeduplicator;
 import org.dougmcintosh.index.extract.ExtractResult;
+import org.dougmcintosh.index.extract.cache.ExtractCache;
+import org.dougmcintosh.index.extract.tika.ExtractAbortedException;
+import org.dougmcintosh.index.extract.tika.ExtractMode;
+import org.dougmcintosh.index.extract.tika.ForkedParserPool;
 import org.dougmcintosh.index.extract.tika.TikaExtractor;
+import org.dougmcintosh.index.incremental.CostHistory;
+import org.dougmcintosh.index.incremental.IndexManifest;
+import org.dougmcintosh.index.incremental.Quarantine;
+import org.dougmcintosh.index.jfr.FileEvent;
+import org.dougmcintosh.index.keyword.KeywordIndexWriter;
 import org.dougmcintosh.index.lucene.CustomAnalyzer;
 import org.dougmcintosh.index.lucene.LuceneOutputWriter;
 import org.dougmcintosh.index.lunr.LunrOutputWriter;
+import org.dougmcintosh.index.lunr.LunrShardMode;
+import org.dougmcintosh.index.lunr.LunrSinkMode;
+import org.dougmcintosh.index.lunr.LunrShardedOutputWriter;
+import org.dougmcintosh.util.AsyncOutputWriter;
+import org.dougmcintosh.util.Compression;
 import org.dougmcintosh.util.SynchronizedOutputWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,113 +31,415 @@ import org.slf4j.LoggerFactory;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 public abstract class WorkerFactory implements Closeable {
     protected final IndexerArgs args;
+    protected final Compression compression;
+    protected final Quarantine quarantine;
+    protected final CostHistory costHistory;
+    private final ExtractCache extractCache;
+    private final ForkedParserPool forkedParsers;
+    /**
+     * Set once every file of the work source has been handed to the pipeline. Files which weren't
+     * seen can only be treated as removed when it is.
+     */
+    protected volatile boolean enumerated = false;
 
-    private WorkerFactory(IndexerArgs args) {
+    private WorkerFactory(IndexerArgs args) throws IOException {
         this.args = Preconditions.checkNotNull(args, "IndexerArgs cannot be null.");
+        this.compression = args.isCompressed() ?
+            Compression.gzip(args.getCompressLevel(), args.getCompressThreads()) : Compression.none();
         CustomAnalyzer.initializeStopWords(args.getStopwordsFile());
+        TikaExtractor.initialize(args.getParserProfile());
+        if (args.getCleanupRulesFile() != null) {
+            TikaExtractor.initializeCleanup(CleanupRules.load(args.getCleanupRulesFile()));
+        }
+        this.quarantine = Quarantine.load(args.getOutputdir());
+        this.costHistory = CostHistory.load(args.getOutputdir());
+
+        if (args.getExtractMode() == ExtractMode.FORK) {
+            this.forkedParsers = ForkedParserPool.start(args.getParserProfile(), args.getWorkers(),
+                TimeUnit.SECONDS.toMillis(args.getParseTimeoutSeconds()), args.getParserHeapMb());
+            TikaExtractor.initializeFork(forkedParsers);
+        } else {
+            this.forkedParsers = null;
+        }
+
+        if (args.isDedup()) {
+            TikaExtractor.initializeDeduplication(new ExtractDeduplicator());
+        }
+
+        if (args.getExtractCacheDir() != null) {
+            this.extractCache = ExtractCache.open(
+                args.getExtractCacheDir(), args.getExtractCacheSizeMb() * 1024L * 1024L);
+            TikaExtractor.initializeCache(extractCache);
+        } else {
+            this.extractCache = null;
+        }
     }
 
     public static WorkerFactory of(IndexerArgs args) throws IOException {
-        return args.getIndexType() == IndexerArgs.IndexType.LUCENE ?
-            new LuceneWorkerFactory(args) : new LunrWorkerFactory(args);
+        switch (args.getIndexType()) {
+            case LUCENE:
+                return new LuceneWorkerFactory(args);
+            case KEYWORDS:
+                return new KeywordWorkerFactory(args);
+            default:
+                return new LunrWorkerFactory(args);
+        }
     }
 
     public abstract Worker newWorker(File sourceFile);
 
+    /**
+     * Called once the work source has handed over every file without error.
+     */
+    void enumerationComplete() {
+        this.enumerated = true;
+    }
+
+    /**
+     * @return processing times recorded by the previous run and recorded by workers during this one
+     */
+    CostHistory costHistory() {
+        return costHistory;
+    }
+
+    /**
+     * Close the index output.
+     */
+    protected abstract void closeOutput() throws IOException;
+
+    @Override
+    public void close() throws IOException {
+        try {
+            closeOutput();
+            quarantine.save();
+            costHistory.save();
+        } finally {
+            if (forkedParsers != null) {
+                forkedParsers.close();
+            }
+            compression.close();
+            if (extractCache != null) {
+                extractCache.close();
+            }
+        }
+    }
+
     public static class LuceneWorkerFactory extends WorkerFactory {
+        private static final Logger logger = LoggerFactory.getLogger(LuceneWorkerFactory.class);
         private final LuceneOutputWriter luceneWriter;
+        private final IndexManifest manifest;
+        /**
+         * Whether manuscripts this run didn't see are deleted from the index.
+         */
+        private final boolean removals;
 
         private LuceneWorkerFactory(IndexerArgs args) throws IOException {
             super(args);
-            this.luceneWriter = new LuceneOutputWriter(args.getOutputdir(), args.getMinTokenLength());
+            this.manifest = IndexManifest.load(args.getOutputdir(), args.isIncremental());
+            final String scope = args.getWorkSource() == WorkSourceType.CRAWL ? crawlScope(args) : null;
+            if (!args.isIncremental()) {
+                manifest.scope(scope);
+                this.removals = true;
+            } else {
+                this.removals = scope != null && scope.equals(manifest.scope());
+                if (!removals) {
+                    logger.warn("Manuscripts this run doesn't see will be kept in the index: {}.", scope == null ?
+                        "the " + args.getWorkSource().name().toLowerCase() + " work source only lists some files" :
+                        "the input directories, include/exclude patterns or recursion differ from the last full rebuild");
+                }
+            }
+            this.luceneWriter = LuceneOutputWriter.builder()
+                .outputDir(args.getOutputdir())
+                .minTokenLength(args.getMinTokenLength())
+                .incremental(args.isIncremental())
+                .writeMode(args.getLuceneWriteMode())
+                .shardStore(args.getShardStore())
+                .forceMergeSegments(args.getForceMergeSegments())
+                .build();
+        }
+
+        /**
+         * @return description of the files a crawl covers, compared between runs to tell whether
+         * they cover the same files
+         */
+        private static String crawlScope(IndexerArgs args) {
+            final List<String> dirs = args.getInputdirs().stream()
+                .map(dir -> dir.getAbsoluteFile().toPath().normalize().toString())
+                .sorted()
+                .collect(Collectors.toList());
+            return "dirs=" + dirs + " include=" + args.getIncludes() + " exclude=" + args.getExcludes() +
+                " recurse=" + args.isRecurse();
         }
 
         @Override
         public Worker newWorker(File sourceFile) {
-            return new LuceneWorker(luceneWriter, sourceFile);
+            return new LuceneWorker(luceneWriter, manifest, quarantine, costHistory, sourceFile);
         }
 
         @Override
-        public void close() throws IOException {
+        protected void closeOutput() throws IOException {
             if (this.luceneWriter != null) {
+                if (!enumerated) {
+                    // files the work source never reached would look removed, and their documents deleted
+                    luceneWriter.close();
+                    if (args.isIncremental()) {
+                        logger.warn("Indexing did not reach every source file. Skipping removals and " +
+                            "keeping the manifest of the previous run.");
+                    } else {
+                        // the previous manifest describes the index this rebuild replaced
+                        logger.warn("Indexing did not reach every source file. The manifest only lists " +
+                            "the files indexed by this run.");
+                        manifest.save();
+                    }
+                    return;
+                }
+                // always empty for a full rebuild since the manifest starts out empty
+                if (removals) {
+                    for (String manuscript : manifest.removed()) {
+                        logger.info("Deleting removed manuscript {} from index.", manuscript);
+                        luceneWriter.delete(manuscript);
+                    }
+                }
                 luceneWriter.close();
+                manifest.save();
             }
         }
     }
 
     public static class LunrWorkerFactory extends WorkerFactory {
-        private final LunrOutputWriter lunrWriter;
+        private final SynchronizedOutputWriter lunrWriter;
 
         private LunrWorkerFactory(IndexerArgs args) throws IOException {
             super(args);
-            this.lunrWriter = new LunrOutputWriter(
-                args.getOutputdir(), args.isCompressed(), args.isPrettyPrint());
+            final SynchronizedOutputWriter writer = args.getLunrShardMode() == LunrShardMode.NONE ?
+                new LunrOutputWriter(
+                    args.getOutputdir(), compression, args.isPrettyPrint(), args.isPrebuilt()) :
+                new LunrShardedOutputWriter(
+                    args.getOutputdir(), args.getLunrShardMode(), args.getLunrShardSizeKb() * 1024L,
+                    compression, args.isPrettyPrint(), args.isPrebuilt());
+            this.lunrWriter = args.getLunrSinkMode() == LunrSinkMode.LOCKED ? writer :
+                new AsyncOutputWriter(writer, args.getSinkBuffer(), args.getLunrSinkMode() == LunrSinkMode.ORDERED);
         }
 
         @Override
         public Worker newWorker(File sourceFile) {
-            return new LunrWorker(lunrWriter, sourceFile);
+            return new TokenizingWorker(lunrWriter, sourceFile);
         }
 
         @Override
-        public void close() throws IOException {
+        protected void closeOutput() throws IOException {
             if (this.lunrWriter != null) {
                 this.lunrWriter.close();
             }
         }
     }
 
-    private abstract static class Worker implements Runnable {
+    public static class KeywordWorkerFactory extends WorkerFactory {
+        private final KeywordIndexWriter keywordWriter;
+
+        private KeywordWorkerFactory(IndexerArgs args) throws IOException {
+            super(args);
+            this.keywordWriter = new KeywordIndexWriter(args.getOutputdir(), compression);
+        }
+
+        @Override
+        public Worker newWorker(File sourceFile) {
+            return new TokenizingWorker(keywordWriter, sourceFile);
+        }
+
+        @Override
+        protected void closeOutput() throws IOException {
+            this.keywordWriter.close();
+        }
+    }
+
+    /**
+     * Carries a single source file through the extract, analyze and write stages of the pipeline.
+     */
+    abstract static class Worker {
         protected static final Logger logger = LoggerFactory.getLogger(Worker.class);
         private final SynchronizedOutputWriter writer;
+        private final IndexManifest manifest;
+        private final Quarantine quarantine;
+        private final CostHistory costHistory;
         protected final File sourceFile;
-        protected final Stopwatch stopwatch;
+        private final FileEvent event = new FileEvent();
+        /**
+         * Weight admitted by the memory budget for this file, released when it leaves the pipeline.
+         */
+        long admittedBytes = 0;
+        private ExtractResult extraction;
+        private IndexEntry entry;
 
-        Worker(SynchronizedOutputWriter writer, File sourceFile) {
+        /**
+         * @param manifest when non-null, files unchanged since the manifest was recorded are skipped
+         *                 and written files are recorded
+         * @param quarantine  quarantined files are skipped and files whose extraction is aborted are quarantined
+         * @param costHistory receives the processing time of written files
+         */
+        Worker(SynchronizedOutputWriter writer,
+               IndexManifest manifest,
+               Quarantine quarantine,
+               CostHistory costHistory,
+               File sourceFile) {
             this.writer = Preconditions.checkNotNull(writer, "Output writer is null.");
+            this.manifest = manifest;
+            this.quarantine = Preconditions.checkNotNull(quarantine, "Quarantine is null.");
+            this.costHistory = Preconditions.checkNotNull(costHistory, "Cost history is null.");
             this.sourceFile = Preconditions.checkNotNull(sourceFile, "Source file is null.");
-            this.stopwatch = Stopwatch.createUnstarted();
         }
 
         protected abstract Optional<ExtractResult> extract();
 
-        @Override
-        public void run() {
+        /**
+         * Hook for analysis which must happen before the index entry is built.
+         */
+        protected void analyze(ExtractResult extraction) {
+        }
+
+        /**
+         * @return true if the index entry carries the extracted text for the output writer. Writers
+         * that only write keywords may hold entries until they are closed, so the text is dropped.
+         */
+        protected boolean keepsRawText() {
+            return true;
+        }
+
+        /**
+         * Extract text from the source file.
+         *
+         * @return true if text was extracted and the worker should move on to the analyze stage
+         */
+        boolean extractStage() {
             final String path = sourceFile.getAbsolutePath();
-            logger.info("Processing source file {}", path);
 
-            Optional<ExtractResult> extractOpt = extract();
+            event.begin();
+
+            if (manifest != null && manifest.isUnchanged(sourceFile)) {
+                Metrics.fileUnchanged();
+                commit("unchanged");
+                return false;
+            }
 
-            if (extractOpt.isPresent()) {
-                stopwatch.start();
-                final ExtractResult extraction = extractOpt.get();
-                final IndexEntry.Builder entryBldr = SermonMetadata.entryBuilderForManuscript(sourceFile);
+            if (quarantine.contains(sourceFile)) {
+                logger.warn("Skipping quarantined source file {}", path);
+                Metrics.fileQuarantined();
+                commit("quarantined");
+                return false;
+            }
 
-                if (entryBldr != null) {
-                    writer.write(
-                        entryBldr.pdfFile(sourceFile)
-                            .keywords(extraction.tokenString())
-                            .rawText(extraction.getText())
-                            .build());
+            logger.info("Processing source file {}", path);
 
-                    if (logger.isTraceEnabled()) {
-                        logger.trace("Indexed {} in {} ms.", sourceFile.getAbsolutePath(), stopwatch.elapsed(TimeUnit.MILLISECONDS));
+            final long start = System.nanoTime();
+            final Optional<ExtractResult> extractOpt;
+            try {
+                extractOpt = extract();
+            } catch (IndexingException e) {
+                for (Throwable cause : Throwables.getCausalChain(e)) {
+                    if (cause instanceof ExtractAbortedException) {
+                        // an abandoned parse is an expected outcome for a bad file, not a failure of the run
+                        final String reason = ((ExtractAbortedException) cause).getReason().name().toLowerCase();
+                        logger.warn("Quarantined source file {} after its parse was abandoned ({}).", path, reason);
+                        quarantine.add(sourceFile, reason);
+                        Metrics.fileQuarantined();
+                        commit("quarantined");
+                        return false;
                     }
-                } else {
-                    logger.error("No index entry was built for file {}.", path);
                 }
+                throw e;
+            }
+            event.extractTime = System.nanoTime() - start;
+            Metrics.record(Metrics.Timer.EXTRACT, event.extractTime);
+            event.bytes = sourceFile.length();
+            Metrics.bytesRead(event.bytes);
+
+            if (!extractOpt.isPresent()) {
+                commit("empty");
+                return false;
+            }
+
+            this.extraction = extractOpt.get();
+            event.chars = extraction.getText().length();
+            Metrics.charsExtracted(event.chars);
+            return true;
+        }
+
+        /**
+         * Analyze the extracted text and build the index entry from the sermon metadata.
+         *
+         * @return true if an index entry was built and the worker should move on to the write stage
+         */
+        boolean analyzeStage() {
+            final long start = System.nanoTime();
+            analyze(extraction);
+            final long analyzed = System.nanoTime();
+            Metrics.record(Metrics.Timer.TOKENIZE, analyzed - start);
+            event.tokens = extraction.tokenCount();
+            Metrics.tokensEmitted(event.tokens);
+
+            final IndexEntry.Builder entryBldr = SermonMetadata.entryBuilderForManuscript(sourceFile);
+            final long looked = System.nanoTime();
+            Metrics.record(Metrics.Timer.METADATA, looked - analyzed);
+            event.analyzeTime = looked - start;
+
+            if (entryBldr == null) {
+                logger.error("No index entry was built for file {}.", sourceFile.getAbsolutePath());
+                commit("unmatched");
+                return false;
+            }
+
+            this.entry = entryBldr.pdfFile(sourceFile)
+                .keywords(extraction.tokenString())
+                .rawText(keepsRawText() ? extraction.getText() : null)
+                .build();
+            this.extraction = null;
+            return true;
+        }
+
+        /**
+         * Write the index entry to the output writer.
+         */
+        void writeStage() {
+            final long start = System.nanoTime();
+            final boolean written = writer.write(entry);
+            event.writeTime = System.nanoTime() - start;
+            Metrics.record(Metrics.Timer.SINK_WRITE, event.writeTime);
+            final long elapsed = event.extractTime + event.analyzeTime + event.writeTime;
+            Metrics.fileCompleted(sourceFile, elapsed);
+            costHistory.record(sourceFile, event.bytes, elapsed);
+
+            if (written && manifest != null) {
+                manifest.record(sourceFile, entry.getPdfRelativePath());
+            }
+
+            commit(written ? "indexed" : "unwritten");
+            this.entry = null;
+        }
+
+        private void commit(String outcome) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.path = sourceFile.getAbsolutePath();
+                event.outcome = outcome;
+                event.commit();
             }
         }
     }
 
     private static class LuceneWorker extends Worker {
-        LuceneWorker(LuceneOutputWriter luceneWriter, File sourceFile) {
-            super(luceneWriter, sourceFile);
+        LuceneWorker(LuceneOutputWriter luceneWriter,
+                     IndexManifest manifest,
+                     Quarantine quarantine,
+                     CostHistory costHistory,
+                     File sourceFile) {
+            super(luceneWriter, manifest, quarantine, costHistory, sourceFile);
         }
 
         @Override
@@ -129,14 +448,24 @@ public abstract class WorkerFactory implements Closeable {
         }
     }
 
-    private class LunrWorker extends Worker {
-        LunrWorker(SynchronizedOutputWriter writer, File sourceFile) {
-            super(writer, sourceFile);
+    private class TokenizingWorker extends Worker {
+        TokenizingWorker(SynchronizedOutputWriter writer, File sourceFile) {
+            super(writer, null, quarantine, costHistory, sourceFile);
         }
 
         @Override
         protected Optional<ExtractResult> extract() {
-            return TikaExtractor.extractAndTokenize(sourceFile, args.getMinTokenLength());
+            return TikaExtractor.extract(sourceFile);
+        }
+
+        @Override
+        protected void analyze(ExtractResult extraction) {
+            extraction.addTokens(CustomAnalyzer.tokenize(sourceFile, extraction.getText(), args.getMinTokenLength()));
+        }
+
+        @Override
+        protected boolean keepsRawText() {
+            return false;
         }
     }
 }
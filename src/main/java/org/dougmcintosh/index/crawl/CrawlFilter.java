@@ -1,7 +0,0 @@
-package org.dougmcintosh.index.crawl;
-
-import java.io.File;
-
-public interface CrawlFilter {
-    boolean allows(File candidate);
-}
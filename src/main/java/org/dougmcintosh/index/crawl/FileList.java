@@ -0,0 +1,89 @@
+package org.dougmcintosh.index.crawl;
+
+import com.google.common.base.Preconditions;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads file paths from a list separated by newlines, as written by {@code find}, or by NUL
+ * characters, as written by {@code find -print0}. Whichever separator comes first is used for the
+ * rest of the list, so NUL-separated paths may contain newlines. Blank entries and trailing
+ * carriage returns of newline-separated entries are ignored. Paths are read lazily, so a list
+ * piped from another process is indexed while it is still being written.
+ */
+public class FileList implements Iterator<String>, Closeable {
+    private static final int UNKNOWN = -1;
+    private final BufferedReader reader;
+    private final StringBuilder buffer = new StringBuilder();
+    private int separator = UNKNOWN;
+    private String next;
+
+    public FileList(Reader reader) {
+        Preconditions.checkNotNull(reader, "Reader is null.");
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            try {
+                next = readPath();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read file list.", e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final String path = next;
+        next = null;
+        return path;
+    }
+
+    private String readPath() throws IOException {
+        int c;
+        while ((c = reader.read()) != -1) {
+            if (separator == UNKNOWN && (c == '\n' || c == '\0')) {
+                separator = c;
+            }
+            if (c == separator) {
+                final String path = entry();
+                if (path != null) {
+                    return path;
+                }
+            } else {
+                buffer.append((char) c);
+            }
+        }
+        return entry();
+    }
+
+    /**
+     * @return the buffered entry, or null if it's blank
+     */
+    private String entry() {
+        int end = buffer.length();
+        if (separator != '\0' && end > 0 && buffer.charAt(end - 1) == '\r') {
+            end--;
+        }
+        final String path = buffer.substring(0, end);
+        buffer.setLength(0);
+        return path.trim().isEmpty() ? null : path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
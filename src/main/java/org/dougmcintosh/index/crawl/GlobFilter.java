@@ -0,0 +1,74 @@
+package org.dougmcintosh.index.crawl;
+
+import com.google.common.base.Preconditions;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Include/exclude rules expressed as {@link java.nio.file.FileSystem#getPathMatcher(String) glob}
+ * patterns. Patterns containing a '/' are matched against the path relative to the crawl root;
+ * all other patterns are matched against the file name alone. A file is allowed when it matches
+ * at least one include and no exclude. A directory is allowed when it matches no exclude.
+ */
+public class GlobFilter {
+    private final List<Rule> includes;
+    private final List<Rule> excludes;
+
+    private GlobFilter(List<Rule> includes, List<Rule> excludes) {
+        this.includes = includes;
+        this.excludes = excludes;
+    }
+
+    public static GlobFilter of(Collection<String> includes, Collection<String> excludes) {
+        Preconditions.checkNotNull(includes, "Includes is null.");
+        Preconditions.checkNotNull(excludes, "Excludes is null.");
+        Preconditions.checkState(!includes.isEmpty(), "At least one include pattern is required.");
+        return new GlobFilter(
+            includes.stream().map(Rule::new).collect(Collectors.toList()),
+            excludes.stream().map(Rule::new).collect(Collectors.toList()));
+    }
+
+    /**
+     * @param relativePath file path relative to the crawl root
+     */
+    public boolean allowsFile(Path relativePath) {
+        return matchesAny(includes, relativePath) && !matchesAny(excludes, relativePath);
+    }
+
+    /**
+     * @param relativePath directory path relative to the crawl root
+     */
+    public boolean allowsDirectory(Path relativePath) {
+        return !matchesAny(excludes, relativePath);
+    }
+
+    private static boolean matchesAny(List<Rule> rules, Path relativePath) {
+        for (Rule rule : rules) {
+            if (rule.matches(relativePath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Rule {
+        private final PathMatcher matcher;
+        private final boolean matchFileName;
+
+        private Rule(String glob) {
+            Preconditions.checkState(glob != null && !glob.isEmpty(), "Glob pattern is null/empty.");
+            this.matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+            this.matchFileName = glob.indexOf('/') < 0;
+        }
+
+        private boolean matches(Path relativePath) {
+            final Path target = matchFileName ? relativePath.getFileName() : relativePath;
+            return target != null && matcher.matches(target);
+        }
+    }
+}
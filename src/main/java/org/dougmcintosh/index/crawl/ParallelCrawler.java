@@ -0,0 +1,172 @@
+package org.dougmcintosh.index.crawl;
+
+import com.google.common.base.Preconditions;
+import org.dougmcintosh.index.Metrics;
+import org.dougmcintosh.index.WorkManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Crawl a provided set of directories in parallel, forking a task per subdirectory onto a
+ * {@link ForkJoinPool}. Each directory entry is stat'ed exactly once and matching files are
+ * handed to the {@link WorkManager} as soon as they are found.
+ */
+public class ParallelCrawler implements WorkSource {
+    private static final Logger logger = LoggerFactory.getLogger(ParallelCrawler.class);
+    private final Set<File> directories;
+    private final WorkManager workManager;
+    private final GlobFilter filter;
+    private final boolean recurse;
+    private final int threads;
+    private final AtomicBoolean complete = new AtomicBoolean(true);
+
+    private ParallelCrawler(Set<File> directories, WorkManager workManager, GlobFilter filter, boolean recurse, int threads) {
+        this.directories = Preconditions.checkNotNull(directories, "Directories is null.");
+        Preconditions.checkState(!this.directories.isEmpty(), "No crawl directories provided.");
+        for (File dir : this.directories) {
+            Preconditions.checkState(dir.isDirectory(),
+                "Provided directory does not exist or is not a directories: " + dir.getAbsolutePath());
+        }
+        this.workManager = Preconditions.checkNotNull(workManager, "WorkManager is null.");
+        this.filter = Preconditions.checkNotNull(filter, "GlobFilter is null.");
+        Preconditions.checkState(threads >= 1, "Crawler threads must be >= 1.");
+        this.recurse = recurse;
+        this.threads = threads;
+    }
+
+    /**
+     * Crawl the provided directories and hand each matching file to the work manager. Returns
+     * once every directory has been crawled.
+     *
+     * @return false if a directory couldn't be listed
+     */
+    public boolean crawl() {
+        final ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            final List<DirectoryTask> roots = directories.stream()
+                .map(dir -> dir.toPath().toAbsolutePath())
+                .map(root -> new DirectoryTask(root, root))
+                .collect(Collectors.toList());
+            roots.forEach(pool::execute);
+            roots.forEach(DirectoryTask::join);
+        } finally {
+            pool.shutdown();
+        }
+        return complete.get();
+    }
+
+    @Override
+    public boolean enumerate() {
+        return crawl();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private final class DirectoryTask extends RecursiveAction {
+        private final Path root;
+        private final Path dir;
+
+        private DirectoryTask(Path root, Path dir) {
+            this.root = root;
+            this.dir = dir;
+        }
+
+        @Override
+        protected void compute() {
+            logger.trace("Starting crawl of {}", dir);
+            final List<DirectoryTask> subdirs = new ArrayList<>();
+            final long start = System.nanoTime();
+            long queuedNanos = 0;
+
+            try (final DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                for (Path entry : entries) {
+                    final BasicFileAttributes attrs;
+                    try {
+                        attrs = Files.readAttributes(entry, BasicFileAttributes.class);
+                    } catch (IOException e) {
+                        // e.g. a dangling symlink or an unreadable entry; skip it and keep crawling the directory
+                        logger.warn("Skipping {}: failed to read its attributes.", entry, e);
+                        continue;
+                    }
+                    final Path relativePath = root.relativize(entry);
+
+                    if (attrs.isDirectory()) {
+                        if (!recurse) {
+                            logger.debug("Directory recursion is disabled. Ignoring directory {}", entry);
+                        } else if (filter.allowsDirectory(relativePath)) {
+                            subdirs.add(new DirectoryTask(root, entry));
+                        }
+                    } else if (attrs.isRegularFile() && filter.allowsFile(relativePath)) {
+                        // blocks while the pipeline is full, which throttles the crawl to the rate of extraction
+                        final long queueStart = System.nanoTime();
+                        workManager.queueWork(entry.toFile(), attrs.size());
+                        queuedNanos += System.nanoTime() - queueStart;
+                    }
+                }
+            } catch (IOException e) {
+                logger.error("Failed to crawl directory {}", dir, e);
+                complete.set(false);
+            }
+            Metrics.record(Metrics.Timer.CRAWL, System.nanoTime() - start - queuedNanos);
+
+            invokeAll(subdirs);
+            logger.trace("Completed crawl of {}", dir);
+        }
+    }
+
+    public static class Builder {
+        private Set<File> directories;
+        private WorkManager workManager;
+        private GlobFilter filter;
+        private boolean recurse = true;
+        private int threads = 1;
+
+        private Builder() {
+        }
+
+        public Builder directories(Set<File> directories) {
+            this.directories = directories;
+            return this;
+        }
+
+        public Builder workManager(WorkManager workManager) {
+            this.workManager = Preconditions.checkNotNull(workManager, "WorkManager is null.");
+            return this;
+        }
+
+        public Builder recurse(boolean flag) {
+            this.recurse = flag;
+            return this;
+        }
+
+        public Builder filter(GlobFilter filter) {
+            this.filter = Preconditions.checkNotNull(filter, "GlobFilter is null.");
+            return this;
+        }
+
+        public Builder threads(int threads) {
+            this.threads = threads;
+            return this;
+        }
+
+        public ParallelCrawler build() {
+            return new ParallelCrawler(directories, workManager, filter, recurse, threads);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package org.dougmcintosh.index.crawl;
+
+import com.google.common.base.Preconditions;
+import org.dougmcintosh.index.WorkManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Hand an explicit list of files to the {@link WorkManager} instead of crawling for them. Absolute
+ * paths are used as they are. Relative paths are resolved against each input directory in turn,
+ * and against its parent when the path starts with the input directory's own name, so catalog
+ * paths such as pdf/... resolve whether the input directory is the site root or its pdf
+ * directory. Listed files are stat'ed rather than crawled for. Files that don't exist are logged and skipped, as
+ * are files that don't match the include and exclude patterns and files listed more than once.
+ */
+public class PathListSource implements WorkSource {
+    private static final Logger logger = LoggerFactory.getLogger(PathListSource.class);
+    private final List<Path> roots;
+    private final WorkManager workManager;
+    private final GlobFilter filter;
+    private final Iterator<String> paths;
+    private final String description;
+
+    private PathListSource(Set<File> directories, WorkManager workManager, GlobFilter filter,
+                           Iterator<String> paths, String description) {
+        Preconditions.checkNotNull(directories, "Directories is null.");
+        Preconditions.checkState(!directories.isEmpty(), "No input directories provided.");
+        this.roots = directories.stream()
+            .map(dir -> dir.toPath().toAbsolutePath().normalize())
+            .collect(Collectors.toList());
+        this.workManager = Preconditions.checkNotNull(workManager, "WorkManager is null.");
+        this.filter = Preconditions.checkNotNull(filter, "GlobFilter is null.");
+        this.paths = Preconditions.checkNotNull(paths, "Paths is null.");
+        this.description = Preconditions.checkNotNull(description, "Description is null.");
+    }
+
+    @Override
+    public boolean enumerate() {
+        logger.info("Queueing files listed by {}.", description);
+        final Set<Path> queued = new HashSet<>();
+        int missing = 0;
+        int filtered = 0;
+
+        while (paths.hasNext()) {
+            final String path = paths.next();
+            final Resolved resolved = resolve(path);
+            if (resolved == null) {
+                logger.warn("Listed file {} was not found in any input directory.", path);
+                missing++;
+            } else if (!filter.allowsFile(resolved.relativePath)) {
+                filtered++;
+            } else if (queued.add(resolved.file)) {
+                // blocks while the pipeline is full, which throttles the list to the rate of extraction
+                workManager.queueWork(resolved.file.toFile(), resolved.size);
+            }
+        }
+
+        logger.info("Queued {} file(s) listed by {}. {} listed file(s) were missing and {} were excluded.",
+            queued.size(), description, missing, filtered);
+        return true;
+    }
+
+    private Resolved resolve(String path) {
+        final Path listed;
+        try {
+            listed = Paths.get(path);
+        } catch (InvalidPathException e) {
+            return null;
+        }
+
+        if (listed.isAbsolute()) {
+            final Path file = listed.normalize();
+            for (Path root : roots) {
+                if (file.startsWith(root)) {
+                    return stat(file, root.relativize(file));
+                }
+            }
+            return stat(file, file.getFileName());
+        }
+
+        for (Path root : roots) {
+            Resolved resolved = stat(root.resolve(listed).normalize(), listed);
+            if (resolved == null && root.getParent() != null && listed.getNameCount() > 1 &&
+                    listed.getName(0).toString().equalsIgnoreCase(root.getFileName().toString())) {
+                final Path relativePath = listed.subpath(1, listed.getNameCount());
+                resolved = stat(root.resolve(relativePath).normalize(), relativePath);
+            }
+            if (resolved != null) {
+                return resolved;
+            }
+        }
+        return null;
+    }
+
+    private static Resolved stat(Path file, Path relativePath) {
+        try {
+            final BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            return attrs.isRegularFile() ? new Resolved(file, relativePath, attrs.size()) : null;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            logger.error("Failed to read attributes of {}", file, e);
+            return null;
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private static final class Resolved {
+        private final Path file;
+        private final Path relativePath;
+        private final long size;
+
+        private Resolved(Path file, Path relativePath, long size) {
+            this.file = file;
+            this.relativePath = relativePath;
+            this.size = size;
+        }
+    }
+
+    public static class Builder {
+        private Set<File> directories;
+        private WorkManager workManager;
+        private GlobFilter filter;
+        private Iterator<String> paths;
+        private String description = "file list";
+
+        private Builder() {
+        }
+
+        public Builder directories(Set<File> directories) {
+            this.directories = directories;
+            return this;
+        }
+
+        public Builder workManager(WorkManager workManager) {
+            this.workManager = Preconditions.checkNotNull(workManager, "WorkManager is null.");
+            return this;
+        }
+
+        public Builder filter(GlobFilter filter) {
+            this.filter = Preconditions.checkNotNull(filter, "GlobFilter is null.");
+            return this;
+        }
+
+        /**
+         * @param paths absolute paths, or paths relative to an input directory
+         * @param description where the paths come from, for logging
+         */
+        public Builder paths(Iterator<String> paths, String description) {
+            this.paths = paths;
+            this.description = description;
+            return this;
+        }
+
+        public PathListSource build() {
+            return new PathListSource(directories, workManager, filter, paths, description);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package org.dougmcintosh.index.crawl;
+
+import org.dougmcintosh.index.WorkManager;
+
+/**
+ * Somewhere the files to index come from, such as a crawl of the input directories or a list of
+ * files. Each file is handed to the {@link WorkManager} as soon as it is found.
+ */
+public interface WorkSource {
+    /**
+     * Hand every file of this source to the work manager. Returns once every file has been handed over.
+     *
+     * @return false if part of the source couldn't be read, so existing files may not have been handed over
+     */
+    boolean enumerate();
+}
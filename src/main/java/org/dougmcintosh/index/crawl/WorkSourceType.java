@@ -0,0 +1,22 @@
+package org.dougmcintosh.index.crawl;
+
+/**
+ * Where the indexer finds the files to index.
+ */
+public enum WorkSourceType {
+    /**
+     * Crawl the input directories for files matching the include and exclude patterns.
+     */
+    CRAWL,
+
+    /**
+     * Index the manuscripts listed in the sermon metadata file, resolved against the input directories.
+     */
+    CATALOG,
+
+    /**
+     * Index the files listed one per line, or NUL-separated, in a file or on standard input,
+     * resolved against the input directories.
+     */
+    LIST
+}
@@ -0,0 +1,164 @@
+package org.dougmcintosh.index.extract;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Rules removing boilerplate, such as copyright lines, headers and page numbers, from extracted
+ * text. Rules are read from a text file with one rule per line:
+ * <pre>
+ * # comment
+ * literal &lt;phrase&gt;
+ * regex &lt;java regular expression&gt;
+ * </pre>
+ * Everything after the first space of a rule is taken verbatim. Rules apply to text whose newline,
+ * carriage return and tab characters have already been replaced with spaces.
+ * <p>
+ * Literal phrases are compiled into a single Aho-Corasick automaton and the regular expressions
+ * into a single alternation, so text is cleaned in one pass whatever the number of rules. At
+ * each position the earliest match of any rule is removed, the longest if several start there, and
+ * removed text is not scanned again. For rules whose matches don't overlap, that's the same as
+ * removing the matches of each rule in turn. Regular expressions relying on anchors, lookbehind or
+ * backreferences are not supported.
+ */
+public final class CleanupRules {
+    private static final String DEFAULT_RULES = "default-cleanup-rules.txt";
+    private static final String LITERAL = "literal";
+    private static final String REGEX = "regex";
+    private static final CleanupRules DEFAULTS = loadDefaults();
+    private final List<String> literals;
+    private final List<String> regexes;
+    private final LiteralMatcher literalMatcher;
+    private final Pattern pattern;
+    private final String fingerprint;
+
+    private CleanupRules(List<String> literals, List<String> regexes) {
+        this.literals = Collections.unmodifiableList(literals);
+        this.regexes = Collections.unmodifiableList(regexes);
+        this.literalMatcher = literals.isEmpty() ? null : new LiteralMatcher(literals);
+
+        final List<String> groups = new ArrayList<>(regexes.size());
+        for (String regex : regexes) {
+            // compile alone first so a bad rule is reported on its own
+            Pattern.compile(regex);
+            groups.add("(?:" + regex + ")");
+        }
+        this.pattern = regexes.isEmpty() ? null : Pattern.compile(String.join("|", groups));
+
+        final Hasher hasher = Hashing.sha256().newHasher();
+        literals.forEach(literal -> hasher.putString(LITERAL + " " + literal + "\n", StandardCharsets.UTF_8));
+        regexes.forEach(regex -> hasher.putString(REGEX + " " + regex + "\n", StandardCharsets.UTF_8));
+        this.fingerprint = hasher.hash().toString().substring(0, 12);
+    }
+
+    /**
+     * @return the rules shipped with the indexer
+     */
+    public static CleanupRules defaults() {
+        return DEFAULTS;
+    }
+
+    public static CleanupRules load(final File rulesFile) throws IOException {
+        Preconditions.checkNotNull(rulesFile, "Rules file is null.");
+        try (final Reader reader = Files.newBufferedReader(rulesFile.toPath(), StandardCharsets.UTF_8)) {
+            return parse(reader, rulesFile.getAbsolutePath());
+        }
+    }
+
+    static CleanupRules parse(final Reader reader, final String source) throws IOException {
+        final List<String> literals = new ArrayList<>();
+        final List<String> regexes = new ArrayList<>();
+        final BufferedReader lines = new BufferedReader(reader);
+        int lineNumber = 0;
+        String line;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty() || line.trim().startsWith("#")) {
+                continue;
+            }
+            final int space = line.indexOf(' ');
+            final String type = space < 0 ? line : line.substring(0, space);
+            final String rule = space < 0 ? "" : line.substring(space + 1);
+            Preconditions.checkState(!rule.isEmpty(), "Empty cleanup rule at %s:%s", source, lineNumber);
+            if (type.equals(LITERAL)) {
+                literals.add(rule);
+            } else if (type.equals(REGEX)) {
+                regexes.add(rule);
+            } else {
+                throw new IllegalStateException(String.format(
+                    "Unknown cleanup rule type \"%s\" at %s:%d. Expected literal or regex.", type, source, lineNumber));
+            }
+        }
+        return new CleanupRules(literals, regexes);
+    }
+
+    private static CleanupRules loadDefaults() {
+        try (final InputStream stream = CleanupRules.class.getResourceAsStream(DEFAULT_RULES)) {
+            Preconditions.checkState(stream != null, "Default cleanup rules are missing from the classpath.");
+            return parse(new InputStreamReader(stream, StandardCharsets.UTF_8), DEFAULT_RULES);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read default cleanup rules.", e);
+        }
+    }
+
+    public List<String> literals() {
+        return literals;
+    }
+
+    public List<String> regexes() {
+        return regexes;
+    }
+
+    /**
+     * @return short hash identifying the rules, which changes whenever a rule is added, removed or edited
+     */
+    public String fingerprint() {
+        return fingerprint;
+    }
+
+    LiteralMatcher literalMatcher() {
+        return literalMatcher;
+    }
+
+    Pattern pattern() {
+        return pattern;
+    }
+
+    /**
+     * @return a writer which cleans text as it is written and passes it on to the provided writer
+     */
+    public CleanupWriter writer(final Writer out) {
+        return new CleanupWriter(this).reset(out);
+    }
+
+    /**
+     * @return the provided text, cleaned
+     */
+    public String clean(final String text) {
+        final StringWriter out = new StringWriter(text.length());
+        try (final Writer writer = writer(out)) {
+            writer.write(text);
+        } catch (IOException e) {
+            // a StringWriter doesn't throw
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,173 @@
+package org.dougmcintosh.index.extract;
+
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.regex.Matcher;
+
+/**
+ * Writer which applies {@link CleanupRules} to the text written to it in a single scan, replacing
+ * newline, carriage return and tab characters with spaces as the text is buffered and then
+ * removing every literal and regular expression match, without holding the whole text in memory.
+ * <p>
+ * Text is buffered until {@link #CHUNK_SIZE} characters are available and then scanned. Text that
+ * can no longer be part of a match is passed on to the wrapped writer. A regular expression match
+ * which {@link Matcher#hitEnd() hit the end} of the buffer is held back until more text arrives or
+ * the writer is closed, as is the tail of the buffer which may hold the start of a match: the last
+ * {@link #PARTIAL_MATCH_WINDOW} characters for regular expressions and the length of the longest
+ * literal phrase, less one, for literals.
+ * <p>
+ * A writer can be {@link #reset(Writer) reset} and reused for the next document, keeping its buffers.
+ */
+public class CleanupWriter extends Writer {
+    static final int CHUNK_SIZE = 8192;
+    static final int PARTIAL_MATCH_WINDOW = 1024;
+    private static final int NONE = Integer.MAX_VALUE;
+    private static final int MAX_RETAINED_CAPACITY = CHUNK_SIZE * 16;
+    private final CleanupRules rules;
+    private final LiteralMatcher literals;
+    private final Matcher matcher;
+    private StringBuilder buffer = new StringBuilder(CHUNK_SIZE * 2);
+    private char[] scratch = new char[CHUNK_SIZE];
+    private Writer out;
+    private boolean closed = true;
+
+    CleanupWriter(CleanupRules rules) {
+        this.rules = Preconditions.checkNotNull(rules, "Cleanup rules are null.");
+        this.literals = rules.literalMatcher();
+        this.matcher = rules.pattern() == null ? null : rules.pattern().matcher("");
+    }
+
+    public CleanupRules rules() {
+        return rules;
+    }
+
+    /**
+     * Start cleaning a new document, written to the provided writer. Any text buffered from the
+     * previous document is discarded.
+     */
+    public CleanupWriter reset(Writer out) {
+        this.out = Preconditions.checkNotNull(out, "Writer is null.");
+        if (buffer.capacity() > MAX_RETAINED_CAPACITY) {
+            // don't hold on to the buffer of an unusually long match
+            buffer = new StringBuilder(CHUNK_SIZE * 2);
+        } else {
+            buffer.setLength(0);
+        }
+        closed = false;
+        return this;
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        Preconditions.checkState(!closed, "Writer is closed.");
+        if (scratch.length < len) {
+            scratch = new char[len];
+        }
+        for (int i = 0; i < len; i++) {
+            final char c = cbuf[off + i];
+            scratch[i] = c == '\n' || c == '\r' || c == '\t' ? ' ' : c;
+        }
+        buffer.append(scratch, 0, len);
+        if (buffer.length() >= CHUNK_SIZE) {
+            clean(false);
+        }
+    }
+
+    private void clean(boolean endOfInput) throws IOException {
+        final int length = buffer.length();
+        int pos = 0;
+        // earliest match of each kind at or after pos, -1 until scanned and NONE when there's none
+        int regexStart = matcher != null ? -1 : NONE;
+        int regexEnd = 0;
+        boolean regexHitEnd = false;
+        int literalStart = literals != null ? -1 : NONE;
+        int literalEnd = 0;
+        if (matcher != null) {
+            matcher.reset(buffer);
+        }
+
+        while (pos <= length) {
+            if (regexStart < pos) {
+                if (matcher.find(pos)) {
+                    regexStart = matcher.start();
+                    regexEnd = matcher.end();
+                } else {
+                    regexStart = NONE;
+                }
+                regexHitEnd = matcher.hitEnd();
+            }
+            if (literalStart < pos) {
+                final long match = literals.find(buffer, pos, length);
+                literalStart = match < 0 ? NONE : (int) (match >>> 32);
+                literalEnd = (int) match;
+            }
+
+            // text from here on may still change with more input
+            int holdFrom = length;
+            if (!endOfInput) {
+                if (regexHitEnd) {
+                    holdFrom = regexStart != NONE ? regexStart : Math.max(pos, length - PARTIAL_MATCH_WINDOW);
+                }
+                if (literals != null) {
+                    holdFrom = Math.min(holdFrom, Math.max(pos, length - literals.maxLength() + 1));
+                }
+            }
+
+            final boolean literalFirst = literalStart < regexStart ||
+                (literalStart == regexStart && literalStart != NONE && literalEnd > regexEnd);
+            final int start = literalFirst ? literalStart : regexStart;
+            final int end = literalFirst ? literalEnd : regexEnd;
+
+            if (start == NONE || start >= holdFrom) {
+                final int emitTo = Math.max(pos, holdFrom);
+                emit(pos, emitTo);
+                pos = emitTo;
+                break;
+            }
+
+            emit(pos, start);
+            pos = end;
+
+            if (start == end) {
+                // empty match; keep the next character and move past it as replaceAll does
+                if (pos < length) {
+                    emit(pos, pos + 1);
+                }
+                pos++;
+            }
+        }
+
+        buffer.delete(0, Math.min(pos, length));
+    }
+
+    private void emit(int start, int end) throws IOException {
+        final int len = end - start;
+        if (len > 0) {
+            if (scratch.length < len) {
+                scratch = new char[len];
+            }
+            buffer.getChars(start, end, scratch, 0);
+            out.write(scratch, 0, len);
+        }
+    }
+
+    /**
+     * Flushes the wrapped writer. Buffered text which may still be part of a match is only
+     * written when this writer is closed.
+     */
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            clean(true);
+            closed = true;
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.dougmcintosh.index.extract;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import org.dougmcintosh.index.Metrics;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Shares a single extraction between source files with identical content within a run. The first
+ * file with a given content hash is parsed. Files with the same content that arrive while it is
+ * being parsed wait for its text, and files that arrive later reuse the text while it is still
+ * held. Every file still gets its own {@link ExtractResult}, and with it its own index entry,
+ * built over the shared text.
+ * <p>
+ * Recently extracted text is held up to a fixed number of characters. Duplicates further apart
+ * than that are parsed again, or read from the extract cache when one is configured.
+ */
+public final class ExtractDeduplicator {
+    static final long MAX_HELD_CHARS = 32L * 1024 * 1024;
+    private final ConcurrentMap<HashCode, CompletableFuture<Extraction>> inFlight = new ConcurrentHashMap<>();
+    private final Cache<HashCode, Extraction> extracted = CacheBuilder.newBuilder()
+        .maximumWeight(MAX_HELD_CHARS)
+        .weigher((HashCode hash, Extraction extraction) -> extraction.text.length())
+        .build();
+
+    /**
+     * Extracts text from a single source file.
+     */
+    @FunctionalInterface
+    public interface TextSource {
+        String extract() throws Exception;
+    }
+
+    /**
+     * @param hash   content hash of the source file
+     * @param source parses the source file if no file with the same content has been extracted
+     * @return the extracted text, possibly shared with other files with the same content
+     */
+    public String extract(final HashCode hash, final TextSource source) throws Exception {
+        Preconditions.checkNotNull(hash, "Hash is null.");
+        Preconditions.checkNotNull(source, "Text source is null.");
+
+        final Extraction held = extracted.getIfPresent(hash);
+        if (held != null) {
+            return shared(held);
+        }
+
+        final CompletableFuture<Extraction> future = new CompletableFuture<>();
+        final CompletableFuture<Extraction> existing = inFlight.putIfAbsent(hash, future);
+        if (existing != null) {
+            try {
+                return shared(existing.get());
+            } catch (ExecutionException e) {
+                // fail the same way the file it duplicates did, so quarantine and failure handling match
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+        }
+
+        try {
+            final long start = System.nanoTime();
+            final String text = source.extract();
+            final Extraction extraction = new Extraction(text == null ? "" : text, System.nanoTime() - start);
+            extracted.put(hash, extraction);
+            future.complete(extraction);
+            return text;
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(hash, future);
+        }
+    }
+
+    private static String shared(final Extraction extraction) {
+        Metrics.fileDeduplicated(extraction.nanos);
+        return extraction.text;
+    }
+
+    private static final class Extraction {
+        private final String text;
+        private final long nanos;
+
+        private Extraction(String text, long nanos) {
+            this.text = text;
+            this.nanos = nanos;
+        }
+    }
+}
@@ -38,6 +38,10 @@ public final class ExtractResult {
         return this.tokens.addAll(tokens);
     }
 
+    public int tokenCount() {
+        return tokens.size();
+    }
+
     public String tokenString() {
         return joiner.join(tokens);
     }
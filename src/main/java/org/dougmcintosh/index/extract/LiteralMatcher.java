@@ -0,0 +1,124 @@
+package org.dougmcintosh.index.extract;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Aho-Corasick automaton finding the leftmost, longest occurrence of any of a set of literal
+ * phrases in a single pass over the text, however many phrases there are. The automaton is
+ * compiled to a dense transition table over the characters that occur in the phrases; every other
+ * character maps to a single class that returns to the root.
+ */
+final class LiteralMatcher {
+    private final char[] classes = new char[Character.MAX_VALUE + 1];
+    private final int alphabetSize;
+    private final int[] transitions;
+    /**
+     * Length of the longest phrase ending at each state, or 0 if none does.
+     */
+    private final int[] longestOutput;
+    private final int maxLength;
+
+    LiteralMatcher(Collection<String> phrases) {
+        Preconditions.checkState(!phrases.isEmpty(), "At least one phrase is required.");
+        int alphabet = 1;
+        int maxLength = 0;
+        for (String phrase : phrases) {
+            Preconditions.checkState(!phrase.isEmpty(), "Literal phrases can't be empty.");
+            Preconditions.checkState(alphabet + phrase.length() <= Character.MAX_VALUE,
+                "Too many distinct characters in literal phrases.");
+            for (int i = 0; i < phrase.length(); i++) {
+                if (classes[phrase.charAt(i)] == 0) {
+                    classes[phrase.charAt(i)] = (char) alphabet++;
+                }
+            }
+            maxLength = Math.max(maxLength, phrase.length());
+        }
+        this.alphabetSize = alphabet;
+        this.maxLength = maxLength;
+
+        // trie, with 0 for missing transitions since no edge leads back to the root
+        final List<int[]> trie = new ArrayList<>();
+        final List<Integer> outputs = new ArrayList<>();
+        trie.add(new int[alphabetSize]);
+        outputs.add(0);
+        for (String phrase : phrases) {
+            int state = 0;
+            for (int i = 0; i < phrase.length(); i++) {
+                final int c = classes[phrase.charAt(i)];
+                if (trie.get(state)[c] == 0) {
+                    trie.get(state)[c] = trie.size();
+                    trie.add(new int[alphabetSize]);
+                    outputs.add(0);
+                }
+                state = trie.get(state)[c];
+            }
+            outputs.set(state, phrase.length());
+        }
+
+        // breadth first, fill missing transitions from each state's failure state
+        this.transitions = new int[trie.size() * alphabetSize];
+        this.longestOutput = new int[trie.size()];
+        final int[] failure = new int[trie.size()];
+        final Deque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < alphabetSize; c++) {
+            final int child = trie.get(0)[c];
+            transitions[c] = child;
+            if (child != 0) {
+                queue.add(child);
+            }
+        }
+        longestOutput[0] = 0;
+        while (!queue.isEmpty()) {
+            final int state = queue.poll();
+            longestOutput[state] = Math.max(outputs.get(state), longestOutput[failure[state]]);
+            for (int c = 0; c < alphabetSize; c++) {
+                final int child = trie.get(state)[c];
+                final int fallback = transitions[failure[state] * alphabetSize + c];
+                if (child != 0) {
+                    failure[child] = fallback;
+                    transitions[state * alphabetSize + c] = child;
+                    queue.add(child);
+                } else {
+                    transitions[state * alphabetSize + c] = fallback;
+                }
+            }
+        }
+    }
+
+    int maxLength() {
+        return maxLength;
+    }
+
+    /**
+     * @return the start of the leftmost occurrence of a phrase within [from, to) in the high 32
+     * bits and its end in the low 32 bits, choosing the longest phrase at that start, or -1 if
+     * there is none
+     */
+    long find(CharSequence text, int from, int to) {
+        int state = 0;
+        int bestStart = -1;
+        int bestEnd = -1;
+        for (int i = from; i < to; i++) {
+            if (bestStart >= 0 && i - maxLength + 1 > bestStart) {
+                // anything ending from here on starts after the best match
+                break;
+            }
+            state = transitions[state * alphabetSize + classes[text.charAt(i)]];
+            final int length = longestOutput[state];
+            if (length > 0) {
+                final int start = i - length + 1;
+                if (bestStart < 0 || start < bestStart || (start == bestStart && i + 1 > bestEnd)) {
+                    bestStart = start;
+                    bestEnd = i + 1;
+                }
+            }
+        }
+        return bestStart < 0 ? -1 : ((long) bestStart << 32) | bestEnd;
+    }
+}
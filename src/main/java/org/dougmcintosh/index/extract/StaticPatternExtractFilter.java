@@ -4,6 +4,10 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Pattern;
 
+/**
+ * The original extract filter, applying each pattern in turn. Extraction now uses
+ * {@link CleanupRules}; this filter remains as the reference its output is checked against.
+ */
 public class StaticPatternExtractFilter {
     private static final List<Pattern> patterns = new ArrayList<>();
 
@@ -0,0 +1,407 @@
+package org.dougmcintosh.index.extract.cache;
+
+import com.google.common.base.Preconditions;
+import org.dougmcintosh.index.IndexingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * On-disk cache of extracted text keyed by source file content hash and extractor version.
+ * <p>
+ * Entries are deflate compressed and appended to a single segment file which is memory mapped
+ * for reads. The segment is scanned once when the cache is opened to rebuild the in-memory
+ * index; a torn record at the end of the segment (e.g. from a killed run) is truncated. The
+ * live size of the cache is capped: when an insert takes the cache over the cap, the least
+ * recently used entries are evicted. Evicted entries stay in the segment until the cache is
+ * closed, at which point the segment is compacted if more than half of it is dead. The segment is
+ * mapped as a single buffer, so it is also compacted mid-run when an append would take it past
+ * {@link #MAX_SEGMENT_BYTES}, first evicting least recently used entries if the live entries
+ * alone wouldn't leave room.
+ * <p>
+ * Segment layout: an 8 byte header ({@link #MAGIC}, {@link #VERSION}) followed by records of
+ * {@code [int keyLength][key utf-8][int textLength][int compressedLength][compressed utf-8 text][int crc32]}
+ * where the crc covers everything in the record before it.
+ */
+public class ExtractCache implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(ExtractCache.class);
+    public static final String SEGMENT_FILE_NAME = "extract-cache.seg";
+    private static final int MAGIC = 0x58434143;
+    private static final int VERSION = 1;
+    private static final int HEADER_LENGTH = 8;
+    private static final int COMPACTION_THRESHOLD_PERCENT = 50;
+    private static final long MAX_SEGMENT_BYTES = Integer.MAX_VALUE;
+    private final Path segmentPath;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Slot> slots = new LinkedHashMap<>(1024, 0.75f, true /* access order */);
+    private FileChannel channel;
+    private MappedByteBuffer mapped;
+    private long segmentLength;
+    private long liveBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    private ExtractCache(Path segmentPath, long maxBytes) {
+        this.segmentPath = segmentPath;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Open (or create) the cache segment in the provided directory.
+     *
+     * @param cacheDir directory holding the cache segment
+     * @param maxBytes maximum size of live cache entries
+     */
+    public static ExtractCache open(final File cacheDir, final long maxBytes) throws IOException {
+        Preconditions.checkNotNull(cacheDir, "Cache dir is null.");
+        Preconditions.checkState(cacheDir.isDirectory(),
+            "Extract cache directory does not exist or isn't a directory: " + cacheDir.getAbsolutePath());
+        Preconditions.checkState(maxBytes > 0, "Extract cache size must be > 0.");
+
+        final ExtractCache cache = new ExtractCache(new File(cacheDir, SEGMENT_FILE_NAME).toPath(), maxBytes);
+        cache.load();
+        return cache;
+    }
+
+    private void load() throws IOException {
+        channel = FileChannel.open(segmentPath,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        if (channel.size() < HEADER_LENGTH) {
+            writeHeader(channel);
+        }
+
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        channel.read(header, 0);
+        header.flip();
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            logger.warn("Discarding extract cache with unrecognized header: {}", segmentPath);
+            channel.truncate(0);
+            writeHeader(channel);
+        }
+
+        segmentLength = channel.size();
+        remap();
+
+        long offset = HEADER_LENGTH;
+        while (offset < segmentLength) {
+            final Slot slot = readSlot(offset);
+            if (slot == null) {
+                logger.warn("Truncating torn extract cache record at offset {} of {}.", offset, segmentPath);
+                channel.truncate(offset);
+                segmentLength = offset;
+                break;
+            }
+            putSlot(slot);
+            offset += slot.recordLength;
+        }
+
+        logger.info("Opened extract cache {} with {} entries ({} bytes live).", segmentPath, slots.size(), liveBytes);
+    }
+
+    private static void writeHeader(FileChannel channel) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        channel.truncate(0);
+        channel.write(header, 0);
+    }
+
+    /**
+     * Read the record header at the provided offset, verifying its checksum.
+     *
+     * @return the record or null if the record is incomplete or corrupt
+     */
+    private Slot readSlot(long offset) {
+        final long remaining = segmentLength - offset;
+        if (remaining < 4) {
+            return null;
+        }
+
+        final ByteBuffer buf = mapped.duplicate();
+        buf.position((int) offset);
+        final int keyLength = buf.getInt();
+        if (keyLength <= 0 || remaining < 4L + keyLength + 8) {
+            return null;
+        }
+
+        final byte[] key = new byte[keyLength];
+        buf.get(key);
+        final int textLength = buf.getInt();
+        final int compressedLength = buf.getInt();
+        final long recordLength = 4L + keyLength + 8 + compressedLength + 4;
+        if (compressedLength < 0 || remaining < recordLength) {
+            return null;
+        }
+
+        final long dataOffset = offset + 4 + keyLength + 8;
+        final ByteBuffer record = mapped.duplicate();
+        record.position((int) offset).limit((int) (offset + recordLength - 4));
+        final CRC32 crc = new CRC32();
+        crc.update(record);
+        buf.position((int) (dataOffset + compressedLength));
+        if ((int) crc.getValue() != buf.getInt()) {
+            return null;
+        }
+
+        return new Slot(new String(key, StandardCharsets.UTF_8), dataOffset, compressedLength, textLength, recordLength);
+    }
+
+    private void remap() throws IOException {
+        Preconditions.checkState(segmentLength <= MAX_SEGMENT_BYTES, "Extract cache segment exceeds 2GB.");
+        mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, segmentLength);
+    }
+
+    /**
+     * Look up the text cached under the provided key, marking the entry as recently used.
+     */
+    public Optional<String> get(final String key) {
+        final byte[] compressed;
+        final int textLength;
+
+        synchronized (this) {
+            final Slot slot = slots.get(key);
+            if (slot == null) {
+                misses++;
+                return Optional.empty();
+            }
+            hits++;
+
+            try {
+                if (slot.dataOffset + slot.compressedLength > mapped.capacity()) {
+                    remap();
+                }
+            } catch (IOException e) {
+                throw new IndexingException("Failed to map extract cache " + segmentPath, e);
+            }
+
+            compressed = new byte[slot.compressedLength];
+            final ByteBuffer buf = mapped.duplicate();
+            buf.position((int) slot.dataOffset);
+            buf.get(compressed);
+            textLength = slot.textLength;
+        }
+
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            final byte[] text = new byte[textLength];
+            int read = 0;
+            while (read < textLength && !inflater.finished()) {
+                read += inflater.inflate(text, read, textLength - read);
+            }
+            return Optional.of(new String(text, 0, read, StandardCharsets.UTF_8));
+        } catch (DataFormatException e) {
+            throw new IndexingException("Corrupt extract cache entry for " + key, e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Append text to the cache under the provided key, evicting least recently used entries
+     * if the cache grows beyond its maximum size.
+     */
+    public void put(final String key, final String text) {
+        final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        final byte[] textBytes = text.getBytes(StandardCharsets.UTF_8);
+        final byte[] compressed = deflate(textBytes);
+
+        final ByteBuffer record = ByteBuffer.allocate(4 + keyBytes.length + 8 + compressed.length + 4);
+        record.putInt(keyBytes.length).put(keyBytes).putInt(textBytes.length).putInt(compressed.length).put(compressed);
+        final CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, record.position());
+        record.putInt((int) crc.getValue());
+        record.flip();
+
+        synchronized (this) {
+            if (slots.containsKey(key)) {
+                return;
+            }
+
+            try {
+                if (segmentLength + record.capacity() > MAX_SEGMENT_BYTES && !makeRoom(record.capacity())) {
+                    logger.warn("Not caching {} bytes of extracted text for {}; too large for the extract cache.",
+                        textBytes.length, key);
+                    return;
+                }
+
+                final long offset = segmentLength;
+                while (record.hasRemaining()) {
+                    channel.write(record, offset + record.position());
+                }
+                segmentLength += record.capacity();
+                putSlot(new Slot(key, offset + 4 + keyBytes.length + 8,
+                    compressed.length, textBytes.length, record.capacity()));
+            } catch (IOException e) {
+                throw new IndexingException("Failed to append to extract cache " + segmentPath, e);
+            }
+        }
+    }
+
+    /**
+     * Compact the segment so that a record of the provided length can be appended without taking
+     * it past {@link #MAX_SEGMENT_BYTES}, evicting least recently used entries if needed.
+     *
+     * @return false if the record can't fit even in an empty segment
+     */
+    private boolean makeRoom(long recordLength) throws IOException {
+        final long room = MAX_SEGMENT_BYTES - HEADER_LENGTH - recordLength;
+        if (room < 0) {
+            return false;
+        }
+
+        final Iterator<Slot> slotsIt = slots.values().iterator();
+        while (liveBytes > room && slotsIt.hasNext()) {
+            final Slot eldest = slotsIt.next();
+            slotsIt.remove();
+            liveBytes -= eldest.recordLength;
+            evictions++;
+        }
+
+        compact();
+        return true;
+    }
+
+    private void putSlot(Slot slot) {
+        final Slot replaced = slots.put(slot.key, slot);
+        if (replaced != null) {
+            liveBytes -= replaced.recordLength;
+        }
+        liveBytes += slot.recordLength;
+        evict();
+    }
+
+    private void evict() {
+        final Iterator<Slot> slotsIt = slots.values().iterator();
+        while (liveBytes > maxBytes && slotsIt.hasNext()) {
+            final Slot eldest = slotsIt.next();
+            slotsIt.remove();
+            liveBytes -= eldest.recordLength;
+            evictions++;
+        }
+    }
+
+    private static byte[] deflate(byte[] input) {
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, input.length / 3));
+            final byte[] buf = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buf, 0, deflater.deflate(buf));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Compact the segment if it is mostly dead and close it.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel == null) {
+            return;
+        }
+
+        logger.info("Extract cache {}: {} hits, {} misses, {} evictions, {} entries ({} bytes live).",
+            segmentPath, hits, misses, evictions, slots.size(), liveBytes);
+
+        try {
+            final long deadBytes = segmentLength - HEADER_LENGTH - liveBytes;
+            if (deadBytes * 100 > (segmentLength - HEADER_LENGTH) * COMPACTION_THRESHOLD_PERCENT) {
+                compact();
+            }
+        } finally {
+            channel.close();
+            channel = null;
+            mapped = null;
+        }
+    }
+
+    /**
+     * Rewrite the live entries, least recently used first, into a new segment and swap it in.
+     * Writing in use order means the next run starts with the same eviction order. The entries
+     * keep their use order in the reopened segment, so compacting mid-run changes nothing but
+     * their offsets.
+     */
+    private void compact() throws IOException {
+        if (segmentLength > mapped.capacity()) {
+            remap();
+        }
+
+        final Path compactPath = segmentPath.resolveSibling(segmentPath.getFileName() + ".compact");
+        final List<Slot> live = new ArrayList<>(slots.size());
+        final long previousLength = segmentLength;
+        long offset = HEADER_LENGTH;
+
+        try (final FileChannel out = FileChannel.open(compactPath, StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeHeader(out);
+            for (Slot slot : slots.values()) {
+                final long recordHeaderLength = slot.recordLength - slot.compressedLength - 4;
+                final long recordOffset = slot.dataOffset - recordHeaderLength;
+                final ByteBuffer record = mapped.duplicate();
+                record.position((int) recordOffset).limit((int) (recordOffset + slot.recordLength));
+                live.add(new Slot(slot.key, offset + recordHeaderLength,
+                    slot.compressedLength, slot.textLength, slot.recordLength));
+                while (record.hasRemaining()) {
+                    offset += out.write(record, offset);
+                }
+            }
+        }
+
+        mapped = null;
+        channel.close();
+        Files.move(compactPath, segmentPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(segmentPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segmentLength = offset;
+        slots.clear();
+        for (Slot slot : live) {
+            slots.put(slot.key, slot);
+        }
+        remap();
+
+        logger.info("Compacted extract cache {} from {} to {} bytes.", segmentPath, previousLength, segmentLength);
+    }
+
+    private static final class Slot {
+        private final String key;
+        private final long dataOffset;
+        private final int compressedLength;
+        private final int textLength;
+        private final long recordLength;
+
+        private Slot(String key, long dataOffset, int compressedLength, int textLength, long recordLength) {
+            this.key = key;
+            this.dataOffset = dataOffset;
+            this.compressedLength = compressedLength;
+            this.textLength = textLength;
+            this.recordLength = recordLength;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package org.dougmcintosh.index.extract.tika;
+
+import java.io.File;
+
+/**
+ * Thrown when a forked parse was abandoned rather than failing on its own, because it ran past the
+ * parse timeout or its child JVM died.
+ */
+public final class ExtractAbortedException extends RuntimeException {
+    private final Reason reason;
+    private final File target;
+
+    public enum Reason {
+        TIMEOUT, CRASH
+    }
+
+    ExtractAbortedException(Reason reason, File target, Throwable cause) {
+        super(String.format("Extraction of %s aborted (%s).", target.getAbsolutePath(), reason.name().toLowerCase()), cause);
+        this.reason = reason;
+        this.target = target;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    public File getTarget() {
+        return target;
+    }
+}
@@ -0,0 +1,17 @@
+package org.dougmcintosh.index.extract.tika;
+
+/**
+ * Where the {@link TikaExtractor} parses documents.
+ */
+public enum ExtractMode {
+    /**
+     * Parse on the extract threads, inside the indexer JVM.
+     */
+    LOCAL,
+
+    /**
+     * Parse in a pool of child JVMs with a per-file timeout and a heap cap, so a malformed document
+     * can't stall an extract thread or exhaust the indexer's heap.
+     */
+    FORK
+}
@@ -0,0 +1,94 @@
+package org.dougmcintosh.index.extract.tika;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.fork.ForkParser;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.ParseContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A pool of child JVMs parsing documents with Tika's {@link ForkParser}. Each child has a capped
+ * heap and exits when a single parse runs past the timeout; either way the parent sees the parse
+ * fail with an {@link ExtractAbortedException} and a fresh child is started for the next file.
+ * Content is streamed to the child and SAX events are streamed back, so the parent's content
+ * handlers and extract filters are unchanged.
+ */
+public final class ForkedParserPool implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(ForkedParserPool.class);
+    /**
+     * Start of the message of the exception {@link ForkParser} throws when a child JVM dies mid-parse.
+     */
+    private static final String LOST_CHILD_MESSAGE = "Failed to communicate with a forked parser process";
+    private final ForkParser parser;
+    private final ParserProfile profile;
+    private final long timeoutMillis;
+
+    private ForkedParserPool(ParserProfile profile, int poolSize, long timeoutMillis, int heapMb) {
+        Preconditions.checkState(poolSize >= 1, "Fork pool size must be >= 1.");
+        Preconditions.checkState(timeoutMillis >= 1, "Parse timeout must be >= 1 ms.");
+        Preconditions.checkState(heapMb >= 16, "Parser heap must be >= 16 MB.");
+        this.profile = Preconditions.checkNotNull(profile, "Parser profile is null.");
+        this.timeoutMillis = timeoutMillis;
+
+        final String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        this.parser = new ForkParser(ForkedParserPool.class.getClassLoader(), profile.newParser());
+        parser.setPoolSize(poolSize);
+        parser.setJavaCommand(Arrays.asList(java, "-Xmx" + heapMb + "m", "-XX:+ExitOnOutOfMemoryError"));
+        parser.setServerParseTimeoutMillis(timeoutMillis);
+
+        logger.info("Parsing in up to {} child JVM(s) with {} MB heap and a {} second timeout.",
+            poolSize, heapMb, TimeUnit.MILLISECONDS.toSeconds(timeoutMillis));
+    }
+
+    /**
+     * @param poolSize      maximum number of child JVMs, normally the number of extract threads
+     * @param timeoutMillis time after which a child abandons a parse and exits
+     * @param heapMb        maximum heap of each child JVM
+     */
+    public static ForkedParserPool start(ParserProfile profile, int poolSize, long timeoutMillis, int heapMb) {
+        return new ForkedParserPool(profile, poolSize, timeoutMillis, heapMb);
+    }
+
+    /**
+     * Parse the stream in a child JVM, blocking until a child is free.
+     *
+     * @throws ExtractAbortedException if the child ran out of time or heap
+     */
+    void parse(File sourceFile, InputStream stream, ContentHandler handler) throws TikaException, IOException, SAXException {
+        final long start = System.nanoTime();
+        try {
+            // the context is serialized to the child with every call, so it doesn't carry a parser
+            // for embedded documents
+            parser.parse(stream, handler, new Metadata(), profile.newParseContext(null));
+        } catch (TikaException | IOException | SAXException | RuntimeException e) {
+            final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (elapsedMillis >= timeoutMillis) {
+                throw new ExtractAbortedException(ExtractAbortedException.Reason.TIMEOUT, sourceFile, e);
+            }
+            for (Throwable cause : Throwables.getCausalChain(e)) {
+                if (cause instanceof OutOfMemoryError ||
+                        (cause.getMessage() != null && cause.getMessage().startsWith(LOST_CHILD_MESSAGE))) {
+                    throw new ExtractAbortedException(ExtractAbortedException.Reason.CRASH, sourceFile, e);
+                }
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        parser.close();
+    }
+}
@@ -0,0 +1,70 @@
+package org.dougmcintosh.index.extract.tika;
+
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.parser.pdf.PDFParser;
+import org.apache.tika.parser.pdf.PDFParserConfig;
+
+/**
+ * Parser configurations available to the {@link TikaExtractor}.
+ */
+public enum ParserProfile {
+    /**
+     * Detect the type of each document and parse it with Tika's default settings, including any
+     * embedded documents and attachments.
+     */
+    AUTO {
+        @Override
+        Parser newParser() {
+            return new AutoDetectParser();
+        }
+
+        @Override
+        ParseContext newParseContext(Parser parser) {
+            final ParseContext context = new ParseContext();
+            if (parser != null) {
+                context.set(Parser.class, parser);
+            }
+            return context;
+        }
+    },
+
+    /**
+     * Skip type detection and hand every document straight to the PDF parser with everything
+     * that doesn't contribute body text (inline images, OCR, position sorting, annotations,
+     * bookmarks, form fields and actions) turned off.
+     */
+    FAST {
+        @Override
+        Parser newParser() {
+            return new PDFParser();
+        }
+
+        @Override
+        ParseContext newParseContext(Parser parser) {
+            final PDFParserConfig config = new PDFParserConfig();
+            config.setExtractInlineImages(false);
+            config.setOcrStrategy(PDFParserConfig.OCR_STRATEGY.NO_OCR);
+            config.setSortByPosition(false);
+            config.setExtractAnnotationText(false);
+            config.setExtractBookmarksText(false);
+            config.setExtractAcroFormContent(false);
+            config.setExtractActions(false);
+            config.setExtractMarkedContent(false);
+            config.setExtractFontNames(false);
+
+            final ParseContext context = new ParseContext();
+            context.set(PDFParserConfig.class, config);
+            return context;
+        }
+    };
+
+    abstract Parser newParser();
+
+    /**
+     * @param parser parser from {@link #newParser()} that embedded documents are handed back to, or
+     *               null to skip embedded documents
+     */
+    abstract ParseContext newParseContext(Parser parser);
+}
@@ -1,41 +1,118 @@
 package org.dougmcintosh.index.extract.tika;
 
+import com.google.common.base.Preconditions;
+import com.google.common.hash.HashCode;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.tika.Tika;
 import org.apache.tika.exception.TikaException;
 import org.apache.tika.metadata.Metadata;
-import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
 import org.apache.tika.sax.BodyContentHandler;
 import org.dougmcintosh.index.IndexingException;
+import org.dougmcintosh.index.extract.ExtractDeduplicator;
 import org.dougmcintosh.index.extract.ExtractResult;
-import org.dougmcintosh.index.extract.StaticPatternExtractFilter;
+import org.dougmcintosh.index.extract.CleanupRules;
+import org.dougmcintosh.index.extract.CleanupWriter;
+import org.dougmcintosh.index.extract.cache.ExtractCache;
+import org.dougmcintosh.index.jfr.ExtractEvent;
 import org.dougmcintosh.index.lucene.CustomAnalyzer;
+import org.dougmcintosh.util.ContentHash;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xml.sax.ContentHandler;
 import org.xml.sax.SAXException;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.Optional;
 
 public final class TikaExtractor {
     private static final Logger logger = LoggerFactory.getLogger(TikaExtractor.class);
+    /**
+     * Bump when a change to extraction or the extract filters changes the text produced for a file
+     * so that stale extract cache entries are no longer used.
+     */
+    private static final int EXTRACTOR_VERSION = 1;
+    private static volatile ParserProfile profile = ParserProfile.AUTO;
+    private static volatile ExtractCache cache;
+    private static volatile ForkedParserPool forkedParsers;
+    private static volatile ExtractDeduplicator deduplicator;
+    private static volatile CleanupRules cleanupRules = CleanupRules.defaults();
+    private static final ThreadLocal<CleanupWriter> cleanupWriters = new ThreadLocal<>();
+    private static final ThreadLocal<ThreadParser> parsers = ThreadLocal.withInitial(() -> new ThreadParser(profile));
+
+    /**
+     * Select the parser profile used for extraction. This method must be called before the
+     * first extraction; the default is {@link ParserProfile#AUTO}.
+     */
+    public static void initialize(final ParserProfile parserProfile) {
+        profile = Preconditions.checkNotNull(parserProfile, "Parser profile is null.");
+        logger.info("Initialized extractor with {} parser profile.", parserProfile);
+    }
+
+    /**
+     * Check the provided cache for previously extracted text before parsing any file. This method
+     * must be called before the first extraction.
+     */
+    public static void initializeCache(final ExtractCache extractCache) {
+        cache = Preconditions.checkNotNull(extractCache, "Extract cache is null.");
+    }
+
+    /**
+     * Parse every file in the provided pool of child JVMs rather than on the calling thread. This
+     * method must be called before the first extraction.
+     */
+    public static void initializeFork(final ForkedParserPool parserPool) {
+        forkedParsers = Preconditions.checkNotNull(parserPool, "Forked parser pool is null.");
+    }
+
+    /**
+     * Clean extracted text with the provided rules rather than the default rules. This method must
+     * be called before the first extraction.
+     */
+    public static void initializeCleanup(final CleanupRules rules) {
+        cleanupRules = Preconditions.checkNotNull(rules, "Cleanup rules are null.");
+        logger.info("Initialized extractor with {} literal and {} regex cleanup rule(s).",
+            rules.literals().size(), rules.regexes().size());
+    }
+
+    /**
+     * Share a single extraction between files with identical content. This method must be called
+     * before the first extraction.
+     */
+    public static void initializeDeduplication(final ExtractDeduplicator extractDeduplicator) {
+        deduplicator = Preconditions.checkNotNull(extractDeduplicator, "Extract deduplicator is null.");
+    }
+
+    /**
+     * Version of the text produced by the extractor, part of every extract cache key.
+     */
+    public static String version() {
+        // forked parses skip embedded documents, so they produce different text from local parses
+        final String version = String.format("%d-%s-%s%s", EXTRACTOR_VERSION, profile.name().toLowerCase(),
+            Tika.getString(), forkedParsers != null ? "-fork" : "");
+        final CleanupRules rules = cleanupRules;
+        // the default rules are covered by EXTRACTOR_VERSION
+        return rules == CleanupRules.defaults() ? version : version + "-" + rules.fingerprint();
+    }
 
     public static Optional<ExtractResult> extract(File sourceFile)
         throws IndexingException {
 
         Optional<ExtractResult> optResult = Optional.empty();
+        final ExtractEvent event = new ExtractEvent();
+        event.begin();
 
-        try (final InputStream stream = new FileInputStream(sourceFile)) {
-            final String rawText = extractRawText(stream);
+        try {
+            final String rawText = dedupedRawText(sourceFile, event);
+            commit(event, sourceFile, rawText);
 
             if (StringUtils.isNotBlank(rawText)) {
-                if (logger.isDebugEnabled()) {
-                    logger.debug("Extracted " + rawText.getBytes(StandardCharsets.UTF_8).length +
-                        " bytes of text from " + sourceFile.getAbsolutePath());
-                }
                 return Optional.of(ExtractResult.of(sourceFile, rawText));
             } else {
                 logger.warn("No text extracted from file {}", sourceFile.getAbsolutePath());
@@ -60,15 +137,101 @@ public final class TikaExtractor {
         return optResult;
     }
 
-    private static String extractRawText(InputStream stream) throws TikaException, IOException, SAXException {
-        final BodyContentHandler handler = new BodyContentHandler(-1 /* disable write limit */);
-        final AutoDetectParser parser = new AutoDetectParser();
-        parser.parse(stream, handler, new Metadata());
-        String text = handler.toString().replaceAll("[\\n\\r\\t]", " ");
-        return StaticPatternExtractFilter.filter(text);
+    private static void commit(ExtractEvent event, File sourceFile, String rawText) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.path = sourceFile.getAbsolutePath();
+            event.bytes = sourceFile.length();
+            event.chars = rawText != null ? rawText.length() : 0;
+            event.commit();
+        }
+    }
+
+    private static String dedupedRawText(File sourceFile, ExtractEvent event) throws Exception {
+        final ExtractDeduplicator extractDeduplicator = deduplicator;
+        if (extractDeduplicator == null) {
+            return cachedRawText(sourceFile, null, event);
+        }
+
+        final HashCode hash = ContentHash.sha256(sourceFile);
+        event.deduplicated = true;
+        return extractDeduplicator.extract(hash, () -> {
+            event.deduplicated = false;
+            return cachedRawText(sourceFile, hash, event);
+        });
+    }
+
+    /**
+     * @param hash content hash of the source file, or null if it hasn't been computed yet
+     */
+    private static String cachedRawText(File sourceFile, HashCode hash, ExtractEvent event)
+        throws TikaException, IOException, SAXException {
+        final ExtractCache extractCache = cache;
+        if (extractCache == null) {
+            return extractRawText(sourceFile);
+        }
+
+        final String key = (hash != null ? hash : ContentHash.sha256(sourceFile)) + ":" + version();
+        final Optional<String> cached = extractCache.get(key);
+        if (cached.isPresent()) {
+            event.cached = true;
+            return cached.get();
+        }
+
+        final String rawText = extractRawText(sourceFile);
+        extractCache.put(key, rawText);
+        return rawText;
+    }
+
+    /**
+     * Parse the file, normalizing whitespace and applying the cleanup rules to the body text as
+     * the parser emits it rather than over copies of the whole document afterwards.
+     */
+    private static String extractRawText(File sourceFile) throws TikaException, IOException, SAXException {
+        final StringWriter text = new StringWriter();
+        try (final InputStream stream = new FileInputStream(sourceFile);
+             final Writer writer = cleanupWriter().reset(text)) {
+            final ForkedParserPool parserPool = forkedParsers;
+            if (parserPool != null) {
+                parserPool.parse(sourceFile, stream, new BodyContentHandler(writer));
+            } else {
+                parsers.get().parse(stream, new BodyContentHandler(writer));
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * @return this thread's cleanup writer, reused from file to file so its buffers are only allocated once
+     */
+    private static CleanupWriter cleanupWriter() {
+        final CleanupRules rules = cleanupRules;
+        CleanupWriter writer = cleanupWriters.get();
+        if (writer == null || writer.rules() != rules) {
+            writer = rules.writer(Writer.nullWriter());
+            cleanupWriters.set(writer);
+        }
+        return writer;
     }
 
     private TikaExtractor() {
     }
 
+    /**
+     * Parser and parse context owned by a single thread so neither is rebuilt for every file.
+     */
+    private static final class ThreadParser {
+        private final Parser parser;
+        private final ParseContext context;
+
+        private ThreadParser(ParserProfile profile) {
+            this.parser = profile.newParser();
+            this.context = profile.newParseContext(parser);
+        }
+
+        private void parse(InputStream stream, ContentHandler handler) throws TikaException, IOException, SAXException {
+            parser.parse(stream, handler, new Metadata(), context);
+        }
+    }
+
 }
@@ -0,0 +1,123 @@
+package org.dougmcintosh.index.incremental;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent record of how long each source file took to process, stored in the output directory
+ * and used to schedule the most expensive files first on the next run. Files without a recorded
+ * cost are estimated from their size at the average cost per byte of the previous run.
+ */
+public class CostHistory {
+    private static final Logger logger = LoggerFactory.getLogger(CostHistory.class);
+    public static final String COST_FILE_NAME = "indexer-costs.json";
+    private static final int VERSION = 1;
+    private final File costFile;
+    private final Map<String, Entry> previous = new ConcurrentHashMap<>();
+    private final Map<String, Entry> recorded = new ConcurrentHashMap<>();
+    private double nanosPerByte = 1.0;
+
+    private CostHistory(File costFile) {
+        this.costFile = costFile;
+    }
+
+    /**
+     * Load the costs recorded by the previous run from the provided output directory, if any.
+     */
+    public static CostHistory load(final File outputDir) throws IOException {
+        Preconditions.checkNotNull(outputDir, "Output dir is null.");
+        final CostHistory history = new CostHistory(new File(outputDir, COST_FILE_NAME));
+
+        if (history.costFile.isFile()) {
+            final JsonNode root = new ObjectMapper().readTree(history.costFile);
+            Preconditions.checkState(root.path("version").asInt() == VERSION,
+                "Unsupported cost history version in " + history.costFile.getAbsolutePath());
+
+            long totalBytes = 0;
+            long totalNanos = 0;
+            final Iterator<Map.Entry<String, JsonNode>> fieldsIt = root.path("files").fields();
+            while (fieldsIt.hasNext()) {
+                final Map.Entry<String, JsonNode> field = fieldsIt.next();
+                final JsonNode node = field.getValue();
+                final Entry entry = new Entry(node.get("size").asLong(), node.get("nanos").asLong());
+                history.previous.put(field.getKey(), entry);
+                totalBytes += entry.size;
+                totalNanos += entry.nanos;
+            }
+            if (totalBytes > 0) {
+                history.nanosPerByte = (double) totalNanos / totalBytes;
+            }
+            logger.info("Loaded costs of {} file(s) from {}.", history.previous.size(), history.costFile.getAbsolutePath());
+        }
+
+        return history;
+    }
+
+    /**
+     * @return the previous run's processing time for the file, or an estimate from its size if the
+     * file is new or its size has changed
+     */
+    public long estimateNanos(final File file, final long size) {
+        final Entry entry = previous.get(file.getAbsolutePath());
+        if (entry != null && entry.size == size) {
+            return entry.nanos;
+        }
+        return (long) (size * nanosPerByte);
+    }
+
+    public void record(final File file, final long size, final long nanos) {
+        recorded.put(file.getAbsolutePath(), new Entry(size, nanos));
+    }
+
+    /**
+     * Write the costs recorded by this run, along with previous costs of files this run didn't
+     * process, to the output directory.
+     */
+    public void save() throws IOException {
+        if (recorded.isEmpty()) {
+            return;
+        }
+
+        final ObjectMapper mapper = new ObjectMapper();
+        final ObjectNode root = mapper.createObjectNode();
+        root.put("version", VERSION);
+        final ObjectNode files = root.putObject("files");
+
+        final Map<String, Entry> merged = new ConcurrentHashMap<>(previous);
+        merged.putAll(recorded);
+        merged.forEach((path, entry) -> {
+            final ObjectNode node = files.putObject(path);
+            node.put("size", entry.size);
+            node.put("nanos", entry.nanos);
+        });
+
+        final File tmpFile = new File(costFile.getParentFile(), costFile.getName() + ".tmp");
+        mapper.writeValue(tmpFile, root);
+        Files.move(tmpFile.toPath(), costFile.toPath(),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        logger.info("Wrote costs of {} file(s) to {}.", merged.size(), costFile.getAbsolutePath());
+    }
+
+    private static final class Entry {
+        private final long size;
+        private final long nanos;
+
+        private Entry(long size, long nanos) {
+            this.size = size;
+            this.nanos = nanos;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package org.dougmcintosh.index.incremental;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.base.Preconditions;
+import org.dougmcintosh.index.IndexingException;
+import org.dougmcintosh.util.ContentHash;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent record of the size, modification time and content hash of every
+ * manuscript written to an index. The manifest is stored in the output directory
+ * and is used by incremental runs to skip files which have not changed since the
+ * previous run and to find index documents whose source file has been removed.
+ * <p>
+ * The manifest also records the scope of the full rebuild it started from: the crawled input
+ * directories and filters. Files are only reported as removed by runs over the same scope, since a
+ * narrower run (a file list, or tighter filters) doesn't see files it was never going to index.
+ */
+public class IndexManifest {
+    private static final Logger logger = LoggerFactory.getLogger(IndexManifest.class);
+    public static final String MANIFEST_FILE_NAME = "indexer-manifest.json";
+    private static final int VERSION = 1;
+    private final File manifestFile;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<String> seen = ConcurrentHashMap.newKeySet();
+    private final Set<String> recordedManuscripts = ConcurrentHashMap.newKeySet();
+    private final boolean hashContent;
+    private volatile String scope;
+
+    private IndexManifest(File manifestFile, boolean hashContent) {
+        this.manifestFile = manifestFile;
+        this.hashContent = hashContent;
+    }
+
+    /**
+     * Load the manifest from the provided output directory.
+     *
+     * @param outputDir index output directory
+     * @param restore   when false, start from an empty manifest and ignore any manifest on disk. Content
+     *                  hashes are only computed when restoring, since a full rebuild never compares them
+     */
+    public static IndexManifest load(final File outputDir, final boolean restore) throws IOException {
+        Preconditions.checkNotNull(outputDir, "Output dir is null.");
+        final IndexManifest manifest = new IndexManifest(new File(outputDir, MANIFEST_FILE_NAME), restore);
+
+        if (restore && manifest.manifestFile.isFile()) {
+            final JsonNode root = new ObjectMapper().readTree(manifest.manifestFile);
+            Preconditions.checkState(root.path("version").asInt() == VERSION,
+                "Unsupported manifest version in " + manifest.manifestFile.getAbsolutePath());
+
+            manifest.scope = root.hasNonNull("scope") ? root.get("scope").asText() : null;
+            final Iterator<Map.Entry<String, JsonNode>> fieldsIt = root.path("files").fields();
+            while (fieldsIt.hasNext()) {
+                final Map.Entry<String, JsonNode> field = fieldsIt.next();
+                final JsonNode node = field.getValue();
+                manifest.entries.put(field.getKey(), new Entry(
+                    node.get("size").asLong(),
+                    node.get("modified").asLong(),
+                    node.hasNonNull("sha256") ? node.get("sha256").asText() : null,
+                    node.get("manuscript").asText()));
+            }
+            logger.info("Loaded manifest with {} entries from {}.",
+                manifest.entries.size(), manifest.manifestFile.getAbsolutePath());
+        }
+
+        return manifest;
+    }
+
+    /**
+     * Determine whether the provided file is unchanged since it was last recorded. Size and
+     * modification time are checked first; the content hash is only computed when those differ and
+     * a hash was recorded for the file.
+     * Every file checked is marked as seen so it will not be reported by {@link #removed()}.
+     */
+    public boolean isUnchanged(final File file) {
+        final String key = file.getAbsolutePath();
+        seen.add(key);
+
+        final Entry entry = entries.get(key);
+        if (entry == null) {
+            return false;
+        }
+
+        try {
+            final BasicFileAttributes attrs = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            final long size = attrs.size();
+            final long modified = attrs.lastModifiedTime().toMillis();
+
+            if (entry.size == size && entry.modified == modified) {
+                return true;
+            }
+
+            if (entry.size == size && entry.sha256 != null && entry.sha256.equals(ContentHash.sha256(file).toString())) {
+                // touched but not modified; remember the new timestamp so the hash isn't recomputed next run
+                entries.put(key, new Entry(size, modified, entry.sha256, entry.manuscript));
+                return true;
+            }
+        } catch (IOException e) {
+            throw new IndexingException(e, file);
+        }
+
+        return false;
+    }
+
+    /**
+     * Record a file which has been successfully written to the index.
+     *
+     * @param file       source manuscript
+     * @param manuscript manuscript path the file was indexed under
+     */
+    public void record(final File file, final String manuscript) {
+        final String key = file.getAbsolutePath();
+        seen.add(key);
+        recordedManuscripts.add(manuscript);
+
+        try {
+            final BasicFileAttributes attrs = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            entries.put(key, new Entry(
+                attrs.size(),
+                attrs.lastModifiedTime().toMillis(),
+                hashContent ? ContentHash.sha256(file).toString() : null,
+                manuscript));
+        } catch (IOException e) {
+            throw new IndexingException(e, file);
+        }
+    }
+
+    /**
+     * Remove every entry whose file was not seen during this run.
+     *
+     * @return manuscript paths of the removed entries, excluding manuscripts recorded during this run
+     * under another file (e.g. a file moved to another input directory)
+     */
+    public Collection<String> removed() {
+        final List<String> manuscripts = new ArrayList<>();
+        final Iterator<Map.Entry<String, Entry>> entriesIt = entries.entrySet().iterator();
+        while (entriesIt.hasNext()) {
+            final Map.Entry<String, Entry> entry = entriesIt.next();
+            if (!seen.contains(entry.getKey())) {
+                if (!recordedManuscripts.contains(entry.getValue().manuscript)) {
+                    manuscripts.add(entry.getValue().manuscript);
+                }
+                entriesIt.remove();
+            }
+        }
+        return manuscripts;
+    }
+
+    /**
+     * @return scope of the full rebuild this manifest started from, or null if it wasn't a full crawl
+     */
+    public String scope() {
+        return scope;
+    }
+
+    /**
+     * Set the scope of a full rebuild; incremental runs keep the scope of the manifest they loaded.
+     *
+     * @param scope description of the crawled directories and filters, or null if the run wasn't a full crawl
+     */
+    public void scope(String scope) {
+        this.scope = scope;
+    }
+
+    /**
+     * Write the manifest to the output directory, replacing any previous manifest.
+     */
+    public void save() throws IOException {
+        final ObjectMapper mapper = new ObjectMapper();
+        final ObjectNode root = mapper.createObjectNode();
+        root.put("version", VERSION);
+        if (scope != null) {
+            root.put("scope", scope);
+        }
+        final ObjectNode files = root.putObject("files");
+
+        entries.forEach((path, entry) -> {
+            final ObjectNode node = files.putObject(path);
+            node.put("size", entry.size);
+            node.put("modified", entry.modified);
+            if (entry.sha256 != null) {
+                node.put("sha256", entry.sha256);
+            }
+            node.put("manuscript", entry.manuscript);
+        });
+
+        final File tmpFile = new File(manifestFile.getParentFile(), manifestFile.getName() + ".tmp");
+        mapper.writeValue(tmpFile, root);
+        Files.move(tmpFile.toPath(), manifestFile.toPath(),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        logger.info("Wrote manifest with {} entries to {}.", entries.size(), manifestFile.getAbsolutePath());
+    }
+
+    private static final class Entry {
+        private final long size;
+        private final long modified;
+        private final String sha256;
+        private final String manuscript;
+
+        private Entry(long size, long modified, String sha256, String manuscript) {
+            this.size = size;
+            this.modified = modified;
+            this.sha256 = sha256;
+            this.manuscript = manuscript;
+        }
+    }
+}
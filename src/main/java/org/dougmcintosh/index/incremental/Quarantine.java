@@ -0,0 +1,126 @@
+package org.dougmcintosh.index.incremental;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent list of source files whose extraction had to be abandoned, stored in the output
+ * directory. Quarantined files are skipped by later runs until they are modified or removed from
+ * the list, so a single malformed document can't stall every run.
+ */
+public class Quarantine {
+    private static final Logger logger = LoggerFactory.getLogger(Quarantine.class);
+    public static final String QUARANTINE_FILE_NAME = "indexer-quarantine.json";
+    private static final int VERSION = 1;
+    private final File quarantineFile;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile boolean changed = false;
+
+    private Quarantine(File quarantineFile) {
+        this.quarantineFile = quarantineFile;
+    }
+
+    /**
+     * Load the quarantine list from the provided output directory, or start an empty one.
+     */
+    public static Quarantine load(final File outputDir) throws IOException {
+        Preconditions.checkNotNull(outputDir, "Output dir is null.");
+        final Quarantine quarantine = new Quarantine(new File(outputDir, QUARANTINE_FILE_NAME));
+
+        if (quarantine.quarantineFile.isFile()) {
+            final JsonNode root = new ObjectMapper().readTree(quarantine.quarantineFile);
+            Preconditions.checkState(root.path("version").asInt() == VERSION,
+                "Unsupported quarantine version in " + quarantine.quarantineFile.getAbsolutePath());
+
+            final Iterator<Map.Entry<String, JsonNode>> fieldsIt = root.path("files").fields();
+            while (fieldsIt.hasNext()) {
+                final Map.Entry<String, JsonNode> field = fieldsIt.next();
+                final JsonNode node = field.getValue();
+                quarantine.entries.put(field.getKey(), new Entry(
+                    node.get("size").asLong(),
+                    node.get("modified").asLong(),
+                    node.get("reason").asText(),
+                    node.get("quarantined").asText()));
+            }
+            logger.info("Loaded {} quarantined file(s) from {}.",
+                quarantine.entries.size(), quarantine.quarantineFile.getAbsolutePath());
+        }
+
+        return quarantine;
+    }
+
+    /**
+     * @return true if the file was quarantined and hasn't been modified since
+     */
+    public boolean contains(final File file) {
+        final Entry entry = entries.get(file.getAbsolutePath());
+        return entry != null && entry.size == file.length() && entry.modified == file.lastModified();
+    }
+
+    /**
+     * Quarantine the provided file as it currently is on disk.
+     */
+    public void add(final File file, final String reason) {
+        entries.put(file.getAbsolutePath(),
+            new Entry(file.length(), file.lastModified(), reason, Instant.now().toString()));
+        changed = true;
+        logger.warn("Quarantined {} ({}). It will be skipped until it changes or is removed from {}.",
+            file.getAbsolutePath(), reason, quarantineFile.getAbsolutePath());
+    }
+
+    /**
+     * Write the quarantine list to the output directory if files were added during this run.
+     */
+    public void save() throws IOException {
+        if (!changed) {
+            return;
+        }
+
+        final ObjectMapper mapper = new ObjectMapper();
+        final ObjectNode root = mapper.createObjectNode();
+        root.put("version", VERSION);
+        final ObjectNode files = root.putObject("files");
+
+        entries.forEach((path, entry) -> {
+            final ObjectNode node = files.putObject(path);
+            node.put("size", entry.size);
+            node.put("modified", entry.modified);
+            node.put("reason", entry.reason);
+            node.put("quarantined", entry.quarantined);
+        });
+
+        final File tmpFile = new File(quarantineFile.getParentFile(), quarantineFile.getName() + ".tmp");
+        mapper.writerWithDefaultPrettyPrinter().writeValue(tmpFile, root);
+        Files.move(tmpFile.toPath(), quarantineFile.toPath(),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        logger.info("Wrote {} quarantined file(s) to {}.", entries.size(), quarantineFile.getAbsolutePath());
+    }
+
+    private static final class Entry {
+        private final long size;
+        private final long modified;
+        private final String reason;
+        private final String quarantined;
+
+        private Entry(long size, long modified, String reason, String quarantined) {
+            this.size = size;
+            this.modified = modified;
+            this.reason = reason;
+            this.quarantined = quarantined;
+        }
+    }
+}
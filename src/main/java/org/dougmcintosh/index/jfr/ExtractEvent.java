@@ -0,0 +1,37 @@
+package org.dougmcintosh.index.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Text extraction of a single file, whether parsed, read from the extract cache or shared from a
+ * file with identical content.
+ */
+@Name("org.dougmcintosh.index.Extract")
+@Label("Extract Text")
+@Category({"Indexer", "Extract"})
+@Description("Text extraction of a single source file.")
+@StackTrace(false)
+public class ExtractEvent extends jdk.jfr.Event {
+    @Label("Path")
+    public String path;
+
+    @Label("Size")
+    @DataAmount(DataAmount.BYTES)
+    public long bytes;
+
+    @Label("Extracted Characters")
+    public long chars;
+
+    @Label("Cached")
+    @Description("Text was read from the extract cache rather than parsed.")
+    public boolean cached;
+
+    @Label("Deduplicated")
+    @Description("Text was shared from another file with identical content rather than parsed.")
+    public boolean deduplicated;
+}
@@ -0,0 +1,50 @@
+package org.dougmcintosh.index.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A single source file's trip through the pipeline, from the start of extraction until it leaves
+ * the pipeline. The event duration includes time spent waiting in stage queues; the stage times
+ * don't.
+ */
+@Name("org.dougmcintosh.index.File")
+@Label("Indexed File")
+@Category({"Indexer", "Pipeline"})
+@Description("A source file's trip through the extract, analyze and write stages.")
+@StackTrace(false)
+public class FileEvent extends jdk.jfr.Event {
+    @Label("Path")
+    public String path;
+
+    @Label("Outcome")
+    @Description("indexed, unchanged, quarantined, empty, unmatched or unwritten")
+    public String outcome;
+
+    @Label("Size")
+    @DataAmount(DataAmount.BYTES)
+    public long bytes;
+
+    @Label("Extracted Characters")
+    public long chars;
+
+    @Label("Tokens")
+    public long tokens;
+
+    @Label("Extract Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long extractTime;
+
+    @Label("Analyze Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long analyzeTime;
+
+    @Label("Write Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long writeTime;
+}
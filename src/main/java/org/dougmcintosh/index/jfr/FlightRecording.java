@@ -0,0 +1,60 @@
+package org.dougmcintosh.index.jfr;
+
+import com.google.common.base.Preconditions;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * A flight recording of an indexing run written to the output directory. Uses the JDK's low
+ * overhead {@code default} settings with every indexer event enabled, so slow files can be lined up
+ * with GC pauses and lock contention in JDK Mission Control.
+ */
+public final class FlightRecording implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(FlightRecording.class);
+    private static final String TIME_PATTERN = "yyyyMMddHHmmss";
+    private final Recording recording;
+    private final File destination;
+
+    private FlightRecording(File outputDir) throws IOException {
+        Preconditions.checkNotNull(outputDir, "Output dir is null.");
+        this.destination = new File(outputDir, String.format("indexer-%s.jfr",
+            DateTimeFormatter.ofPattern(TIME_PATTERN).format(LocalDateTime.now())));
+
+        try {
+            this.recording = new Recording(Configuration.getConfiguration("default"));
+        } catch (ParseException e) {
+            throw new IOException("Failed to read the default flight recorder configuration.", e);
+        }
+        recording.setName("indexer");
+        recording.enable(FileEvent.class);
+        recording.enable(ExtractEvent.class);
+        recording.enable(TokenizeEvent.class);
+        recording.enable(IndexWriteEvent.class);
+        recording.setDestination(destination.toPath());
+        recording.start();
+        logger.info("Started flight recording to {}.", destination.getAbsolutePath());
+    }
+
+    public static FlightRecording start(File outputDir) throws IOException {
+        return new FlightRecording(outputDir);
+    }
+
+    /**
+     * Stop the recording, writing it to the output directory.
+     */
+    @Override
+    public void close() {
+        recording.stop();
+        recording.close();
+        logger.info("Wrote flight recording to {}.", destination.getAbsolutePath());
+    }
+}
@@ -0,0 +1,32 @@
+package org.dougmcintosh.index.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A single index entry handed to an output writer, including any wait for the output lock.
+ */
+@Name("org.dougmcintosh.index.IndexWrite")
+@Label("Index Write")
+@Category({"Indexer", "Write"})
+@Description("An index entry written to an output writer.")
+@StackTrace(false)
+public class IndexWriteEvent extends jdk.jfr.Event {
+    @Label("Manuscript")
+    public String manuscript;
+
+    @Label("Writer")
+    public String writer;
+
+    @Label("Lock Wait")
+    @Description("Time spent waiting for the output writer lock.")
+    @Timespan(Timespan.NANOSECONDS)
+    public long lockWait;
+
+    @Label("Written")
+    public boolean written;
+}
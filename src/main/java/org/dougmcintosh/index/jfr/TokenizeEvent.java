@@ -0,0 +1,24 @@
+package org.dougmcintosh.index.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Keyword tokenization of a single file's extracted text.
+ */
+@Name("org.dougmcintosh.index.Tokenize")
+@Label("Tokenize")
+@Category({"Indexer", "Analyze"})
+@Description("Keyword tokenization of a single source file's text.")
+@StackTrace(false)
+public class TokenizeEvent extends jdk.jfr.Event {
+    @Label("Path")
+    public String path;
+
+    @Label("Tokens")
+    @Description("Distinct keywords emitted.")
+    public long tokens;
+}
@@ -0,0 +1,144 @@
+package org.dougmcintosh.index.keyword;
+
+import com.google.common.base.Preconditions;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Loads a keyword index written by {@link KeywordIndexWriter}, gzip compressed or not, into memory.
+ */
+public class KeywordIndexReader {
+    private final String[] fields;
+    private final String[][] documents;
+    private final String[] terms;
+    private final int[][] postings;
+
+    private KeywordIndexReader(String[] fields, String[][] documents, String[] terms, int[][] postings) {
+        this.fields = fields;
+        this.documents = documents;
+        this.terms = terms;
+        this.postings = postings;
+    }
+
+    public static KeywordIndexReader open(File file) throws IOException {
+        Preconditions.checkNotNull(file, "Keyword index file is null.");
+
+        try (final InputStream raw = new BufferedInputStream(new FileInputStream(file))) {
+            raw.mark(2);
+            final boolean gzipped = raw.read() == 0x1F && raw.read() == 0x8B;
+            raw.reset();
+
+            final InputStream fileIn = gzipped ? new BufferedInputStream(new GZIPInputStream(raw)) : raw;
+            final CRC32 crc = new CRC32();
+            final DataInputStream in = new DataInputStream(new CheckedInputStream(fileIn, crc));
+
+            final byte[] magic = new byte[KeywordIndexWriter.MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, KeywordIndexWriter.MAGIC)) {
+                throw new IOException("Not a keyword index: " + file.getAbsolutePath());
+            }
+            final int version = in.readUnsignedByte();
+            if (version != KeywordIndexWriter.VERSION) {
+                throw new IOException("Unsupported keyword index version " + version + ": " + file.getAbsolutePath());
+            }
+
+            final String[] fields = new String[Varint.read(in)];
+            for (int i = 0; i < fields.length; i++) {
+                fields[i] = readString(in);
+            }
+
+            final String[][] documents = new String[Varint.read(in)][];
+            for (int i = 0; i < documents.length; i++) {
+                documents[i] = new String[fields.length];
+                for (int j = 0; j < fields.length; j++) {
+                    documents[i][j] = readString(in);
+                }
+            }
+
+            final String[] terms = new String[Varint.read(in)];
+            final int[][] postings = new int[terms.length][];
+            byte[] previous = new byte[0];
+            for (int i = 0; i < terms.length; i++) {
+                final int prefix = Varint.read(in);
+                final byte[] term = Arrays.copyOf(previous, prefix + Varint.read(in));
+                in.readFully(term, prefix, term.length - prefix);
+                terms[i] = new String(term, StandardCharsets.UTF_8);
+                previous = term;
+
+                final int[] docIds = new int[Varint.read(in)];
+                int last = 0;
+                for (int j = 0; j < docIds.length; j++) {
+                    last += Varint.read(in);
+                    docIds[j] = last;
+                }
+                postings[i] = docIds;
+            }
+
+            final int expected = (int) crc.getValue();
+            if (new DataInputStream(fileIn).readInt() != expected) {
+                throw new IOException("Keyword index checksum mismatch: " + file.getAbsolutePath());
+            }
+            return new KeywordIndexReader(fields, documents, terms, postings);
+        }
+    }
+
+    public int documentCount() {
+        return documents.length;
+    }
+
+    /**
+     * @return the stored fields of the provided document, omitting null values
+     */
+    public Map<String, String> document(int docId) {
+        final Map<String, String> document = new LinkedHashMap<>();
+        for (int i = 0; i < fields.length; i++) {
+            if (documents[docId][i] != null) {
+                document.put(fields[i], documents[docId][i]);
+            }
+        }
+        return document;
+    }
+
+    public int termCount() {
+        return terms.length;
+    }
+
+    /**
+     * @return every term in ascending order
+     */
+    public List<String> terms() {
+        return Collections.unmodifiableList(Arrays.asList(terms));
+    }
+
+    /**
+     * @return ascending ids of the documents containing the provided term, empty if the term isn't indexed
+     */
+    public int[] postings(String term) {
+        final int idx = Arrays.binarySearch(terms, term);
+        return idx >= 0 ? postings[idx].clone() : new int[0];
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        final int length = Varint.read(in);
+        if (length == 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length - 1];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
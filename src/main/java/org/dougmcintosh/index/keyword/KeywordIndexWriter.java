@@ -0,0 +1,219 @@
+package org.dougmcintosh.index.keyword;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+import com.google.common.base.Stopwatch;
+import org.dougmcintosh.index.IndexEntry;
+import org.dougmcintosh.util.Compression;
+import org.dougmcintosh.util.SynchronizedOutputWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Writes a compact binary keyword index: the entries' stored fields, a front coded term dictionary
+ * in ascending term order and, per term, the ids of the documents containing it as varint deltas.
+ * Terms are interned into integer ids as entries are written, so the writer doesn't need the output
+ * lock. See {@link KeywordIndexReader} and the README for the file layout.
+ */
+public class KeywordIndexWriter extends SynchronizedOutputWriter {
+    private static final Logger logger = LoggerFactory.getLogger(KeywordIndexWriter.class);
+    static final byte[] MAGIC = {'K', 'W', 'I', 'X'};
+    static final int VERSION = 1;
+    static final String[] FIELDS = {
+        "pdf", "audio", "category", "subCategory", "seriesCode", "seriesTitle", "sermonTitle", "passage", "sermonDate"
+    };
+    private static final String TIME_PATTERN = "yyyyMMddHHmmss";
+    private static final Splitter KEYWORD_SPLITTER = Splitter.on(' ').omitEmptyStrings();
+    private final File outputFile;
+    private final Compression compression;
+    private final TermDictionary dictionary = new TermDictionary();
+    private final Queue<Document> documents = new ConcurrentLinkedQueue<>();
+    private final LongAdder keywordBytes = new LongAdder();
+
+    public KeywordIndexWriter(File outputDir, Compression compression) {
+        super(outputDir, false);
+        this.compression = Preconditions.checkNotNull(compression, "Compression is null.");
+        this.outputFile = new File(outputDir, String.format("keywords-%s.kwix" + compression.extension(),
+            DateTimeFormatter.ofPattern(TIME_PATTERN).format(LocalDateTime.now())));
+    }
+
+    @Override
+    protected void doWrite(IndexEntry entry) {
+        final String keywords = entry.getKeywords() != null ? entry.getKeywords() : "";
+        int[] termIds = new int[16];
+        int count = 0;
+        for (String term : KEYWORD_SPLITTER.split(keywords)) {
+            if (count == termIds.length) {
+                termIds = Arrays.copyOf(termIds, count * 2);
+            }
+            termIds[count++] = dictionary.intern(term);
+        }
+        keywordBytes.add(keywords.length());
+
+        final LocalDate sermonDate = entry.getSermonDate();
+        documents.add(new Document(new String[]{
+            entry.getPdfRelativePath(), entry.getAudio(), entry.getCategory(), entry.getSubCategory(),
+            entry.getSeriesCode(), entry.getSeriesTitle(), entry.getSermonTitle(), entry.getPassage(),
+            sermonDate != null ? sermonDate.toString() : null
+        }, Arrays.copyOf(termIds, count)));
+    }
+
+    @Override
+    public void close() throws IOException {
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+
+        // doc ids follow manuscript path order so the output doesn't depend on thread scheduling
+        final Document[] docs = documents.toArray(new Document[0]);
+        Arrays.sort(docs, Comparator.comparing(doc -> doc.fields[0], Comparator.nullsFirst(Comparator.naturalOrder())));
+
+        final String[] terms = dictionary.terms();
+        final Integer[] sortedIds = new Integer[terms.length];
+        for (int i = 0; i < sortedIds.length; i++) {
+            sortedIds[i] = i;
+        }
+        Arrays.sort(sortedIds, Comparator.comparing(id -> terms[id]));
+        final int[] rank = new int[terms.length];
+        for (int i = 0; i < sortedIds.length; i++) {
+            rank[sortedIds[i]] = i;
+        }
+
+        final int[][] postings = postings(docs, rank);
+        long postingCount = 0;
+
+        final OutputStream fileOut = new BufferedOutputStream(compression.wrap(new FileOutputStream(outputFile)));
+        try (final DataOutputStream trailer = new DataOutputStream(fileOut)) {
+            final CRC32 crc = new CRC32();
+            final DataOutputStream out = new DataOutputStream(new CheckedOutputStream(fileOut, crc));
+
+            out.write(MAGIC);
+            out.writeByte(VERSION);
+            Varint.write(out, FIELDS.length);
+            for (String field : FIELDS) {
+                writeString(out, field);
+            }
+
+            Varint.write(out, docs.length);
+            for (Document doc : docs) {
+                for (String value : doc.fields) {
+                    writeString(out, value);
+                }
+            }
+
+            Varint.write(out, terms.length);
+            byte[] previous = new byte[0];
+            for (int i = 0; i < sortedIds.length; i++) {
+                final byte[] term = terms[sortedIds[i]].getBytes(StandardCharsets.UTF_8);
+                final int prefix = sharedPrefix(previous, term);
+                Varint.write(out, prefix);
+                Varint.write(out, term.length - prefix);
+                out.write(term, prefix, term.length - prefix);
+                previous = term;
+
+                final int[] docIds = postings[i];
+                Varint.write(out, docIds.length);
+                int last = 0;
+                for (int docId : docIds) {
+                    Varint.write(out, docId - last);
+                    last = docId;
+                }
+                postingCount += docIds.length;
+            }
+
+            out.flush();
+            trailer.writeInt((int) crc.getValue());
+        }
+
+        logger.info("Wrote keyword index of {} documents, {} terms and {} postings to {} in {} ms " +
+                "({} bytes of keyword text, {} bytes on disk).",
+            docs.length, terms.length, postingCount, outputFile.getAbsolutePath(),
+            stopwatch.elapsed(TimeUnit.MILLISECONDS), keywordBytes.sum(), outputFile.length());
+    }
+
+    /**
+     * @return for every term in rank order, the ascending ids of the documents containing it
+     */
+    private static int[][] postings(Document[] docs, int[] rank) {
+        final int[] docFreq = new int[rank.length];
+        for (Document doc : docs) {
+            for (int termId : doc.termIds) {
+                docFreq[rank[termId]]++;
+            }
+        }
+
+        final int[][] postings = new int[rank.length][];
+        for (int i = 0; i < postings.length; i++) {
+            postings[i] = new int[docFreq[i]];
+        }
+
+        final int[] filled = new int[rank.length];
+        for (int docId = 0; docId < docs.length; docId++) {
+            for (int termId : docs[docId].termIds) {
+                final int r = rank[termId];
+                final int[] docIds = postings[r];
+                // keywords are unique per entry, but guard against repeats
+                if (filled[r] == 0 || docIds[filled[r] - 1] != docId) {
+                    docIds[filled[r]++] = docId;
+                }
+            }
+        }
+
+        for (int i = 0; i < postings.length; i++) {
+            if (filled[i] != postings[i].length) {
+                postings[i] = Arrays.copyOf(postings[i], filled[i]);
+            }
+        }
+        return postings;
+    }
+
+    private static int sharedPrefix(byte[] a, byte[] b) {
+        final int max = Math.min(a.length, b.length);
+        int i = 0;
+        while (i < max && a[i] == b[i]) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Strings are written as a varint of the UTF-8 byte length plus one followed by the bytes, with
+     * zero marking a null value.
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            Varint.write(out, 0);
+            return;
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        Varint.write(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    private static final class Document {
+        private final String[] fields;
+        private final int[] termIds;
+
+        private Document(String[] fields, int[] termIds) {
+            this.fields = fields;
+            this.termIds = termIds;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package org.dougmcintosh.index.keyword;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Corpus wide term interning table handing out an integer id per distinct term. Lookups of known
+ * terms are lock free; a new term only contends with threads interning terms in the same hash bin.
+ * Ids are assigned in first-seen order and are remapped to sorted order when the index is written.
+ */
+final class TermDictionary {
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>(1 << 16);
+    private final AtomicInteger nextId = new AtomicInteger(0);
+
+    /**
+     * @return the id of the provided term, assigning a new id if the term hasn't been seen before
+     */
+    int intern(String term) {
+        Preconditions.checkNotNull(term, "Term is null.");
+        final Integer id = ids.get(term);
+        return id != null ? id : ids.computeIfAbsent(term, t -> nextId.getAndIncrement());
+    }
+
+    int size() {
+        return nextId.get();
+    }
+
+    /**
+     * @return every interned term indexed by its id; only valid once interning has finished
+     */
+    String[] terms() {
+        final String[] terms = new String[nextId.get()];
+        for (Map.Entry<String, Integer> entry : ids.entrySet()) {
+            terms[entry.getValue()] = entry.getKey();
+        }
+        return terms;
+    }
+}
@@ -14,18 +14,21 @@ import org.apache.lucene.analysis.en.EnglishAnalyzer;
 import org.apache.lucene.analysis.standard.StandardTokenizer;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.dougmcintosh.index.IndexingException;
+import org.dougmcintosh.index.jfr.TokenizeEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.Reader;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 public class CustomAnalyzer extends StopwordAnalyzerBase {
     private static final Logger logger = LoggerFactory.getLogger(CustomAnalyzer.class);
@@ -46,6 +49,17 @@ public class CustomAnalyzer extends StopwordAnalyzerBase {
 
     private static volatile CharArraySet stopWords;
 
+    /**
+     * Analyzers shared by tokenize() for each min token length. An analyzer reuses its token
+     * stream per thread, so sharing one keeps a single tokenizer and filter chain per thread.
+     */
+    private static final Map<Integer, CustomAnalyzer> sharedAnalyzers = new ConcurrentHashMap<>();
+
+    /**
+     * Terms seen in the document being tokenized, reused by each thread from document to document.
+     */
+    private static final ThreadLocal<TermSet> seenTerms = ThreadLocal.withInitial(TermSet::new);
+
     public static CustomAnalyzer from(int minTokenLength) {
         Preconditions.checkNotNull(stopWords, "Stop words have not been initialized.");
         return new CustomAnalyzer(stopWords, minTokenLength);
@@ -74,19 +88,34 @@ public class CustomAnalyzer extends StopwordAnalyzerBase {
     }
 
     public static Collection<String> tokenize(File sourceFile, String rawText, int minTokenLength) {
-        Preconditions.checkNotNull(sourceFile, "Source file argument is null.");
         Preconditions.checkState(StringUtils.isNotBlank(rawText), "Cannot tokenize null/empty text string.");
+        Preconditions.checkNotNull(sourceFile, "Source file argument is null.");
+        // the analyzer reads a string through its own reusable reader
+        return tokenize(sourceFile, analyzer -> analyzer.tokenStream("text", rawText), minTokenLength);
+    }
 
+    /**
+     * Collect the distinct terms of a document. Terms are read from the term attribute's buffer and
+     * looked up in this thread's set of seen terms, so a string is only built, with a single copy of
+     * the buffer, for the first occurrence of each term.
+     */
+    private static Collection<String> tokenize(File sourceFile,
+                                               Function<CustomAnalyzer, TokenStream> streams,
+                                               int minTokenLength) {
+        final TokenizeEvent event = new TokenizeEvent();
+        event.begin();
         final Collection<String> result = new HashSet<>();
-        try (final CustomAnalyzer analyzer = CustomAnalyzer.from(minTokenLength);
-             final TokenStream tokenStream = analyzer.tokenStream("text",
-                 new InputStreamReader(
-                     new ByteArrayInputStream(rawText.getBytes(StandardCharsets.UTF_8))))) {
-
+        final TermSet seen = seenTerms.get();
+        seen.clear();
+        try (final TokenStream tokenStream = streams.apply(shared(minTokenLength))) {
+            final CharTermAttribute term = tokenStream.addAttribute(CharTermAttribute.class);
             try {
                 tokenStream.reset();
                 while (tokenStream.incrementToken()) {
-                    result.add(tokenStream.getAttribute(CharTermAttribute.class).toString());
+                    final String added = seen.addIfAbsent(term.buffer(), term.length());
+                    if (added != null) {
+                        result.add(added);
+                    }
                 }
             } finally {
                 tokenStream.end();
@@ -95,9 +124,21 @@ public class CustomAnalyzer extends StopwordAnalyzerBase {
             final String absPath = sourceFile.getAbsolutePath();
             logger.error("Exception tokenizing extract result for file {}", absPath, e);
         }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.path = sourceFile.getAbsolutePath();
+            event.tokens = result.size();
+            event.commit();
+        }
         return result;
     }
 
+    private static CustomAnalyzer shared(int minTokenLength) {
+        final CustomAnalyzer analyzer = sharedAnalyzers.get(minTokenLength);
+        return analyzer != null ? analyzer : sharedAnalyzers.computeIfAbsent(minTokenLength, CustomAnalyzer::from);
+    }
+
     /**
      * Builds an analyzer with the given stop words.
      *
@@ -176,4 +217,78 @@ public class CustomAnalyzer extends StopwordAnalyzerBase {
     protected TokenStream normalize(String fieldName, TokenStream in) {
         return new LowerCaseFilter(in);
     }
+
+    /**
+     * Open addressing set of the distinct terms of a document, looked up straight from a term
+     * buffer without building a string. Owned by a single thread and cleared between documents.
+     */
+    private static final class TermSet {
+        private String[] table = new String[1024];
+        private int size = 0;
+
+        /**
+         * @return the term as a new string if it wasn't in the set, or null if it was
+         */
+        private String addIfAbsent(char[] buffer, int length) {
+            // same hash as String.hashCode(), which strings cache, so probing compares cached hashes
+            int hash = 0;
+            for (int i = 0; i < length; i++) {
+                hash = 31 * hash + buffer[i];
+            }
+
+            final int mask = table.length - 1;
+            int slot = spread(hash) & mask;
+            for (String existing = table[slot]; existing != null; existing = table[slot]) {
+                if (existing.hashCode() == hash && matches(existing, buffer, length)) {
+                    return null;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            final String term = new String(buffer, 0, length);
+            table[slot] = term;
+            if (++size * 2 > table.length) {
+                grow();
+            }
+            return term;
+        }
+
+        private void clear() {
+            if (size > 0) {
+                Arrays.fill(table, null);
+                size = 0;
+            }
+        }
+
+        private void grow() {
+            final String[] previous = table;
+            table = new String[previous.length * 2];
+            final int mask = table.length - 1;
+            for (String term : previous) {
+                if (term != null) {
+                    int slot = spread(term.hashCode()) & mask;
+                    while (table[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    table[slot] = term;
+                }
+            }
+        }
+
+        private static int spread(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+
+        private static boolean matches(String term, char[] buffer, int length) {
+            if (term.length() != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (term.charAt(i) != buffer[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
 }
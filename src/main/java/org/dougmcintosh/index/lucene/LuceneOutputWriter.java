@@ -1,23 +1,39 @@
 package org.dougmcintosh.index.lucene;
 
+import com.google.common.base.Preconditions;
+import com.google.common.base.Stopwatch;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.ByteBuffersDirectory;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.dougmcintosh.index.IndexEntry;
 import org.dougmcintosh.index.IndexingException;
 import org.dougmcintosh.util.SynchronizedOutputWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 
 public class LuceneOutputWriter extends SynchronizedOutputWriter {
+    private static final Logger logger = LoggerFactory.getLogger(LuceneOutputWriter.class);
     public static final String FLD_CATEGORY = "category";
     public static final String FLD_SUBCATEGORY = "subcategory";
     public static final String FLD_SERIES_CODE = "seriesCode";
@@ -29,15 +45,40 @@ public class LuceneOutputWriter extends SynchronizedOutputWriter {
     public static final String FLD_SERMON_PASSAGE = "sermonPassage";
     public static final String FLD_SERMON_TEXT = "sermonText";
     private final IndexWriter indexWriter;
+    private final int minTokenLength;
+    private final boolean incremental;
+    private final LuceneWriteMode writeMode;
+    private final ShardStore shardStore;
+    private final int forceMergeSegments;
+    private final List<Shard> shards = new ArrayList<>();
+    private final ThreadLocal<Shard> threadShard = ThreadLocal.withInitial(this::newShard);
+    private final Queue<String> shardedManuscripts = new ConcurrentLinkedQueue<>();
+
+    private LuceneOutputWriter(File outputDir,
+                               int minTokenLength,
+                               boolean incremental,
+                               LuceneWriteMode writeMode,
+                               ShardStore shardStore,
+                               int forceMergeSegments) throws IOException {
+        super(outputDir, writeMode == LuceneWriteMode.LOCKED);
+        Preconditions.checkState(forceMergeSegments >= 0, "Force merge segments must be >= 0.");
+        this.minTokenLength = minTokenLength;
+        this.incremental = incremental;
+        this.writeMode = Preconditions.checkNotNull(writeMode, "Write mode is null.");
+        this.shardStore = Preconditions.checkNotNull(shardStore, "Shard store is null.");
+        this.forceMergeSegments = forceMergeSegments;
 
-    public LuceneOutputWriter(File outputDir, int minTokenLength) throws IOException {
-        super(outputDir);
         final IndexWriterConfig cfg = new IndexWriterConfig(CustomAnalyzer.from(minTokenLength));
-        cfg.setOpenMode(IndexWriterConfig.OpenMode.CREATE);
+        cfg.setOpenMode(incremental ?
+            IndexWriterConfig.OpenMode.CREATE_OR_APPEND : IndexWriterConfig.OpenMode.CREATE);
         final Directory index = FSDirectory.open(Paths.get(outputDir.toURI()));
         this.indexWriter = new IndexWriter(index, cfg);
     }
 
+    public static Builder builder() {
+        return new Builder();
+    }
+
     @Override
     protected void doWrite(IndexEntry entry) throws IndexingException {
         final Document doc = new Document();
@@ -59,14 +100,173 @@ public class LuceneOutputWriter extends SynchronizedOutputWriter {
         }
 
         try {
-            indexWriter.addDocument(doc);
+            if (writeMode == LuceneWriteMode.SHARDED) {
+                threadShard.get().writer.addDocument(doc);
+                if (incremental) {
+                    // replaced in the output index when the shards are merged
+                    shardedManuscripts.add(entry.getPdfRelativePath());
+                }
+            } else if (incremental) {
+                indexWriter.updateDocument(new Term(FLD_SERMON_MANUSCRIPT, entry.getPdfRelativePath()), doc);
+            } else {
+                indexWriter.addDocument(doc);
+            }
         } catch (IOException e) {
             throw new IndexingException(e);
         }
     }
 
+    /**
+     * Delete the document indexed for the provided manuscript path.
+     */
+    public void delete(String manuscript) throws IOException {
+        indexWriter.deleteDocuments(new Term(FLD_SERMON_MANUSCRIPT, manuscript));
+    }
+
+    private Shard newShard() {
+        try {
+            final Path tempDir = shardStore == ShardStore.DISK ? Files.createTempDirectory("indexer-shard") : null;
+            final Directory dir = tempDir != null ? FSDirectory.open(tempDir) : new ByteBuffersDirectory();
+            final IndexWriterConfig cfg = new IndexWriterConfig(CustomAnalyzer.from(minTokenLength));
+            cfg.setOpenMode(IndexWriterConfig.OpenMode.CREATE);
+            final Shard shard = new Shard(dir, new IndexWriter(dir, cfg), tempDir);
+
+            synchronized (shards) {
+                shards.add(shard);
+            }
+            logger.info("Opened {} index shard for thread {}.", shardStore, Thread.currentThread().getName());
+            return shard;
+        } catch (IOException e) {
+            throw new IndexingException("Failed to open index shard.", e);
+        }
+    }
+
     @Override
     public void close() throws IOException {
-        indexWriter.close();
+        try {
+            if (writeMode == LuceneWriteMode.SHARDED) {
+                mergeShards();
+            }
+
+            if (forceMergeSegments > 0) {
+                final Stopwatch stopwatch = Stopwatch.createStarted();
+                indexWriter.forceMerge(forceMergeSegments);
+                logger.info("Force merged index to {} segment(s) in {} ms.",
+                    forceMergeSegments, stopwatch.elapsed(TimeUnit.MILLISECONDS));
+            }
+
+            final Stopwatch stopwatch = Stopwatch.createStarted();
+            indexWriter.close();
+            logger.info("Committed index in {} ms.", stopwatch.elapsed(TimeUnit.MILLISECONDS));
+        } finally {
+            releaseShards();
+        }
+    }
+
+    /**
+     * Commit every shard and add them to the output index.
+     */
+    private void mergeShards() throws IOException {
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        final Directory[] dirs = new Directory[shards.size()];
+        for (int i = 0; i < dirs.length; i++) {
+            final Shard shard = shards.get(i);
+            shard.writer.close();
+            dirs[i] = shard.dir;
+        }
+        final long closeMillis = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+
+        if (!shardedManuscripts.isEmpty()) {
+            indexWriter.deleteDocuments(shardedManuscripts.stream()
+                .map(manuscript -> new Term(FLD_SERMON_MANUSCRIPT, manuscript))
+                .toArray(Term[]::new));
+        }
+
+        indexWriter.addIndexes(dirs);
+        logger.info("Merged {} index shard(s) in {} ms (shard commit {} ms, addIndexes {} ms).",
+            dirs.length, stopwatch.elapsed(TimeUnit.MILLISECONDS), closeMillis,
+            stopwatch.elapsed(TimeUnit.MILLISECONDS) - closeMillis);
+    }
+
+    private void releaseShards() {
+        for (Shard shard : shards) {
+            try {
+                shard.writer.close();
+                shard.dir.close();
+                if (shard.tempDir != null) {
+                    MoreFiles.deleteRecursively(shard.tempDir, RecursiveDeleteOption.ALLOW_INSECURE);
+                }
+            } catch (IOException e) {
+                logger.warn("Failed to release index shard {}.", shard.tempDir, e);
+            }
+        }
+        shards.clear();
+    }
+
+    private static final class Shard {
+        private final Directory dir;
+        private final IndexWriter writer;
+        private final Path tempDir;
+
+        private Shard(Directory dir, IndexWriter writer, Path tempDir) {
+            this.dir = dir;
+            this.writer = writer;
+            this.tempDir = tempDir;
+        }
+    }
+
+    public static class Builder {
+        private File outputDir;
+        private int minTokenLength = CustomAnalyzer.DEFAULT_MIN_TOKEN_LENGTH;
+        private boolean incremental = false;
+        private LuceneWriteMode writeMode = LuceneWriteMode.LOCKED;
+        private ShardStore shardStore = ShardStore.DISK;
+        private int forceMergeSegments = 0;
+
+        private Builder() {
+        }
+
+        public Builder outputDir(File outputDir) {
+            this.outputDir = outputDir;
+            return this;
+        }
+
+        public Builder minTokenLength(int minTokenLength) {
+            this.minTokenLength = minTokenLength;
+            return this;
+        }
+
+        /**
+         * When true, the existing index is opened for update and documents are replaced by their
+         * {@link #FLD_SERMON_MANUSCRIPT} value rather than appended.
+         */
+        public Builder incremental(boolean flag) {
+            this.incremental = flag;
+            return this;
+        }
+
+        public Builder writeMode(LuceneWriteMode writeMode) {
+            this.writeMode = writeMode;
+            return this;
+        }
+
+        public Builder shardStore(ShardStore shardStore) {
+            this.shardStore = shardStore;
+            return this;
+        }
+
+        /**
+         * Force merge the index down to the provided number of segments before it is closed.
+         * Zero (the default) leaves segments to the merge policy.
+         */
+        public Builder forceMergeSegments(int forceMergeSegments) {
+            this.forceMergeSegments = forceMergeSegments;
+            return this;
+        }
+
+        public LuceneOutputWriter build() throws IOException {
+            return new LuceneOutputWriter(
+                outputDir, minTokenLength, incremental, writeMode, shardStore, forceMergeSegments);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,25 @@
+package org.dougmcintosh.index.lucene;
+
+/**
+ * How write threads share the {@link LuceneOutputWriter}.
+ */
+public enum LuceneWriteMode {
+    /**
+     * Every document is added while holding the output writer lock, one at a time.
+     */
+    LOCKED,
+
+    /**
+     * Write threads add documents to the shared {@link org.apache.lucene.index.IndexWriter}
+     * directly. The writer inverts each document in a per-thread buffer, so analysis of the
+     * sermon text runs in parallel across write threads.
+     */
+    CONCURRENT,
+
+    /**
+     * Every write thread adds documents to its own private {@link org.apache.lucene.index.IndexWriter}
+     * and {@link ShardStore shard}. The shards are combined into the output index when the output
+     * writer is closed, so write threads share nothing while indexing.
+     */
+    SHARDED
+}
@@ -0,0 +1,16 @@
+package org.dougmcintosh.index.lucene;
+
+/**
+ * Where {@link LuceneWriteMode#SHARDED} keeps each write thread's shard until it is merged.
+ */
+public enum ShardStore {
+    /**
+     * Heap backed directory per shard.
+     */
+    RAM,
+
+    /**
+     * File system directory per shard under the system temp directory.
+     */
+    DISK
+}
@@ -0,0 +1,185 @@
+package org.dougmcintosh.index.lunr;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds a lunr (https://lunrjs.com/) index over a single {@value #FIELD} field and writes it in the
+ * serialized form read by {@code lunr.Index.load}, so clients can skip building the index themselves.
+ * <p>
+ * Scoring matches {@code lunr.Builder}: each field vector holds the BM25 score of every term in the
+ * document, rounded to three decimal places. Terms are indexed as provided; no lunr pipeline functions
+ * are applied at build time and none are serialized for search time.
+ * <p>
+ * The indexer's keywords are already deduplicated per document, so every term frequency is 1 and
+ * scores only vary with document frequency and keyword count. Frequencies would be counted if a
+ * document's tokens repeated a term, as lunr does, but nothing in the indexer provides such tokens.
+ * <p>
+ * This class is not thread safe.
+ */
+public class LunrIndexBuilder {
+    /**
+     * lunr release whose serialized index format is written.
+     */
+    public static final String LUNR_VERSION = "2.3.9";
+    public static final String FIELD = "keywords";
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private final Map<String, Term> terms = new HashMap<>();
+    private final List<Document> documents = new ArrayList<>();
+    private long totalFieldLength = 0;
+
+    /**
+     * Add a document to the index.
+     *
+     * @param ref    document reference returned by lunr searches
+     * @param tokens the document's terms; a repeated term counts towards its frequency in the document
+     */
+    public void add(String ref, Iterable<String> tokens) {
+        Preconditions.checkNotNull(ref, "Document ref is null.");
+        Preconditions.checkNotNull(tokens, "Tokens are null.");
+
+        final Map<Term, Integer> frequencies = new LinkedHashMap<>();
+        int fieldLength = 0;
+        for (String token : tokens) {
+            final Term term = terms.computeIfAbsent(token, Term::new);
+            if (frequencies.merge(term, 1, Integer::sum) == 1) {
+                term.refs.add(ref);
+            }
+            fieldLength++;
+        }
+
+        final Term[] docTerms = frequencies.keySet().toArray(new Term[0]);
+        final int[] docFrequencies = frequencies.values().stream().mapToInt(Integer::intValue).toArray();
+        documents.add(new Document(ref, docTerms, docFrequencies, fieldLength));
+        totalFieldLength += fieldLength;
+    }
+
+    public int documentCount() {
+        return documents.size();
+    }
+
+    public int termCount() {
+        return terms.size();
+    }
+
+    /**
+     * Write the serialized index as a single json object.
+     */
+    public void write(JsonGenerator generator) throws IOException {
+        final Term[] sortedTerms = terms.values().toArray(new Term[0]);
+        Arrays.sort(sortedTerms, Comparator.comparing(term -> term.text));
+        for (int i = 0; i < sortedTerms.length; i++) {
+            sortedTerms[i].index = i;
+        }
+
+        final int documentCount = documents.size();
+        final double averageFieldLength = documentCount == 0 ? 0 : (double) totalFieldLength / documentCount;
+
+        generator.writeStartObject();
+        generator.writeStringField("version", LUNR_VERSION);
+        generator.writeArrayFieldStart("fields");
+        generator.writeString(FIELD);
+        generator.writeEndArray();
+
+        generator.writeArrayFieldStart("fieldVectors");
+        for (Document doc : documents) {
+            writeFieldVector(generator, doc, documentCount, averageFieldLength);
+        }
+        generator.writeEndArray();
+
+        // lunr.Index.load builds its token set from this array and requires it in term order
+        generator.writeArrayFieldStart("invertedIndex");
+        for (Term term : sortedTerms) {
+            generator.writeStartArray();
+            generator.writeString(term.text);
+            generator.writeStartObject();
+            generator.writeNumberField("_index", term.index);
+            generator.writeObjectFieldStart(FIELD);
+            for (String ref : term.refs) {
+                generator.writeObjectFieldStart(ref);
+                generator.writeEndObject();
+            }
+            generator.writeEndObject();
+            generator.writeEndObject();
+            generator.writeEndArray();
+        }
+        generator.writeEndArray();
+
+        generator.writeArrayFieldStart("pipeline");
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    private void writeFieldVector(JsonGenerator generator,
+                                  Document doc,
+                                  int documentCount,
+                                  double averageFieldLength) throws IOException {
+        // lunr.Vector requires its elements in term index order
+        final Integer[] order = new Integer[doc.terms.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingInt(i -> doc.terms[i].index));
+
+        final double lengthNorm = 1 - B + B * (doc.fieldLength / averageFieldLength);
+
+        generator.writeStartArray();
+        generator.writeString(FIELD + "/" + doc.ref);
+        generator.writeStartArray();
+        for (int i : order) {
+            final Term term = doc.terms[i];
+            final int tf = doc.frequencies[i];
+            final double score = term.idf(documentCount) * ((K1 + 1) * tf) / (K1 * lengthNorm + tf);
+            generator.writeNumber(term.index);
+            generator.writeNumber(Math.round(score * 1000) / 1000d);
+        }
+        generator.writeEndArray();
+        generator.writeEndArray();
+    }
+
+    private static final class Term {
+        private final String text;
+        private final List<String> refs = new ArrayList<>(2);
+        private int index;
+        private double idf = Double.NaN;
+
+        private Term(String text) {
+            this.text = text;
+        }
+
+        /**
+         * Inverse document frequency as calculated by {@code lunr.idf}.
+         */
+        private double idf(int documentCount) {
+            if (Double.isNaN(idf)) {
+                final double x = (documentCount - refs.size() + 0.5) / (refs.size() + 0.5);
+                idf = Math.log(1 + Math.abs(x));
+            }
+            return idf;
+        }
+    }
+
+    private static final class Document {
+        private final String ref;
+        private final Term[] terms;
+        private final int[] frequencies;
+        private final int fieldLength;
+
+        private Document(String ref, Term[] terms, int[] frequencies, int fieldLength) {
+            this.ref = ref;
+            this.terms = terms;
+            this.frequencies = frequencies;
+            this.fieldLength = fieldLength;
+        }
+    }
+}
@@ -1,11 +1,15 @@
 package org.dougmcintosh.index.lunr;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SequenceWriter;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+import com.google.common.base.Stopwatch;
 import org.dougmcintosh.index.IndexEntry;
 import org.dougmcintosh.index.IndexingException;
+import org.dougmcintosh.util.Compression;
 import org.dougmcintosh.util.SynchronizedOutputWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,30 +20,47 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.zip.GZIPOutputStream;
+import java.util.concurrent.TimeUnit;
 
 public class LunrOutputWriter extends SynchronizedOutputWriter {
     private static final Logger logger = LoggerFactory.getLogger(LunrOutputWriter.class);
     private static final String TIME_PATTERN = "YYYYMMDDHHmmss";
+    static final Splitter KEYWORD_SPLITTER = Splitter.on(' ').omitEmptyStrings();
     private final SequenceWriter sequenceWriter;
     private final File outputFile;
+    private final ObjectWriter jsonWriter;
+    private final Compression compression;
+    private final LunrIndexBuilder indexBuilder;
+    private final String timestamp;
 
-    public LunrOutputWriter(File outputDir, boolean compress, boolean prettyPrint) throws IOException {
+    public LunrOutputWriter(File outputDir, Compression compression, boolean prettyPrint) throws IOException {
+        this(outputDir, compression, prettyPrint, false);
+    }
+
+    /**
+     * @param prebuilt when true, a serialized lunr index over the entry keywords is also written
+     *                 when the writer is closed
+     */
+    public LunrOutputWriter(File outputDir,
+                            Compression compression,
+                            boolean prettyPrint,
+                            boolean prebuilt) throws IOException {
         super(outputDir);
 
         Preconditions.checkNotNull(outputDir, "Output file is null.");
         Preconditions.checkState(outputDir.exists(),
             "Output dir does not exist: " + outputDir.getAbsolutePath());
 
-        this.outputFile = new File(outputDir, timestampedFileName(compress));
+        this.compression = Preconditions.checkNotNull(compression, "Compression is null.");
+        this.timestamp = timestamp();
+        this.outputFile = new File(outputDir, timestampedFileName("lunr-%s.json"));
+        this.indexBuilder = prebuilt ? new LunrIndexBuilder() : null;
 
-        final ObjectWriter jsonWriter = prettyPrint ?
+        this.jsonWriter = prettyPrint ?
             new ObjectMapper().writer().withDefaultPrettyPrinter() :
             new ObjectMapper().writer();
 
-        final OutputStream outStream = compress ?
-            new GZIPOutputStream(new FileOutputStream(outputFile)) :
-            new FileOutputStream(outputFile);
+        final OutputStream outStream = openOutputStream(outputFile);
 
         // strange api call; nothing is written but creates a SequenceWriter
         sequenceWriter = jsonWriter.writeValues(outStream);
@@ -48,27 +69,51 @@ public class LunrOutputWriter extends SynchronizedOutputWriter {
         logger.info("Initialized output writer on {}", outputDir.getAbsolutePath());
     }
 
-    private String timestampedFileName(boolean compress) {
-        String template = "lunr-%s.json";
-        if (compress) {
-            template += ".gz";
-        }
-        return String.format(
-            template,
-            DateTimeFormatter.ofPattern(TIME_PATTERN).format(LocalDateTime.now()));
+    private String timestampedFileName(String template) {
+        return String.format(template + compression.extension(), timestamp);
+    }
+
+    private OutputStream openOutputStream(File file) throws IOException {
+        return compression.wrap(new FileOutputStream(file));
+    }
+
+    static String timestamp() {
+        return DateTimeFormatter.ofPattern(TIME_PATTERN).format(LocalDateTime.now());
     }
 
+
     @Override
     public void close() throws IOException {
         if (sequenceWriter != null) {
             sequenceWriter.close();
         }
+
+        if (indexBuilder != null) {
+            writePrebuiltIndex();
+        }
+    }
+
+    private void writePrebuiltIndex() throws IOException {
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        final File indexFile = new File(outputDir, timestampedFileName("lunr-index-%s.json"));
+
+        try (final JsonGenerator generator = jsonWriter.createGenerator(openOutputStream(indexFile))) {
+            indexBuilder.write(generator);
+        }
+
+        logger.info("Wrote prebuilt lunr index of {} documents and {} terms to {} in {} ms.",
+            indexBuilder.documentCount(), indexBuilder.termCount(), indexFile.getAbsolutePath(),
+            stopwatch.elapsed(TimeUnit.MILLISECONDS));
     }
 
     @Override
     protected void doWrite(IndexEntry entry) {
         try {
             sequenceWriter.write(entry);
+
+            if (indexBuilder != null && entry.getKeywords() != null) {
+                indexBuilder.add(entry.getPdfRelativePath(), KEYWORD_SPLITTER.split(entry.getKeywords()));
+            }
         } catch (IOException e) {
             throw new IndexingException("Unexpected failure writing index entry " + entry, e);
         }
@@ -0,0 +1,21 @@
+package org.dougmcintosh.index.lunr;
+
+/**
+ * How lunr index entries are split across output files.
+ */
+public enum LunrShardMode {
+    /**
+     * Every entry is written to a single file.
+     */
+    NONE,
+
+    /**
+     * One shard per sermon category and subcategory, optionally split further by shard size.
+     */
+    CATEGORY,
+
+    /**
+     * Entries are written to a shard until it reaches the target shard size.
+     */
+    SIZE
+}
@@ -0,0 +1,244 @@
+package org.dougmcintosh.index.lunr;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.google.common.base.Preconditions;
+import com.google.common.io.CountingOutputStream;
+import org.dougmcintosh.index.IndexEntry;
+import org.dougmcintosh.index.IndexingException;
+import org.dougmcintosh.util.Compression;
+import org.dougmcintosh.util.SynchronizedOutputWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Writes lunr index entries to a directory of shards so clients can download only the shards they
+ * need. Entries are split by sermon category and subcategory and/or by a target shard size, and a
+ * manifest describing every shard is written when the writer is closed.
+ * <p>
+ * Each open shard holds a compression buffer, so at most {@link #MAX_OPEN_SHARDS} are kept open.
+ * When another category needs a shard, the least recently written one is closed, and later
+ * entries of its category start a new shard.
+ * <p>
+ * Output layout:
+ * <pre>
+ * lunr-&lt;timestamp&gt;/
+ *     manifest.json
+ *     shard-0000.json[.gz]
+ *     shard-0000-index.json[.gz]   (with prebuilt indexes)
+ *     ...
+ * </pre>
+ */
+public class LunrShardedOutputWriter extends SynchronizedOutputWriter {
+    private static final Logger logger = LoggerFactory.getLogger(LunrShardedOutputWriter.class);
+    public static final String MANIFEST_FILE = "manifest.json";
+    private static final int MANIFEST_VERSION = 1;
+    private static final int MAX_OPEN_SHARDS = 16;
+    private final File shardDir;
+    private final LunrShardMode mode;
+    private final long targetShardBytes;
+    private final Compression compression;
+    private final boolean prebuilt;
+    private final ObjectWriter jsonWriter;
+    private final LinkedHashMap<String, Shard> openShards = new LinkedHashMap<>(16, 0.75f, true /* access order */);
+    private final List<Shard> shards = new ArrayList<>();
+
+    /**
+     * @param targetShardBytes uncompressed size at which a shard is closed and a new one started, or
+     *                         zero to only split by category; shards overshoot by less than one entry
+     *                         plus the JSON generator's buffer
+     */
+    public LunrShardedOutputWriter(File outputDir,
+                                   LunrShardMode mode,
+                                   long targetShardBytes,
+                                   Compression compression,
+                                   boolean prettyPrint,
+                                   boolean prebuilt) throws IOException {
+        super(outputDir);
+        Preconditions.checkState(mode == LunrShardMode.CATEGORY || mode == LunrShardMode.SIZE,
+            "Unsupported shard mode: " + mode);
+        Preconditions.checkState(targetShardBytes > 0 || mode == LunrShardMode.CATEGORY,
+            "Target shard size must be > 0 when sharding by size.");
+
+        this.shardDir = new File(outputDir, String.format("lunr-%s", LunrOutputWriter.timestamp()));
+        this.mode = mode;
+        this.targetShardBytes = targetShardBytes;
+        this.compression = Preconditions.checkNotNull(compression, "Compression is null.");
+        this.prebuilt = prebuilt;
+        this.jsonWriter = prettyPrint ?
+            new ObjectMapper().writer().withDefaultPrettyPrinter() :
+            new ObjectMapper().writer();
+
+        if (!shardDir.mkdir()) {
+            throw new IOException("Failed to create shard directory " + shardDir.getAbsolutePath());
+        }
+
+        logger.info("Writing {} sharded lunr index to {}", mode, shardDir.getAbsolutePath());
+    }
+
+    @Override
+    protected void doWrite(IndexEntry entry) {
+        final String key = mode == LunrShardMode.CATEGORY ?
+            Objects.toString(entry.getCategory(), "") + '\0' + Objects.toString(entry.getSubCategory(), "") : "";
+
+        try {
+            Shard shard = openShards.get(key);
+            if (shard != null && targetShardBytes > 0 && shard.bytes() >= targetShardBytes) {
+                shard.finish();
+                shard = null;
+            }
+            if (shard == null) {
+                closeLeastRecentShard();
+                shard = new Shard(shards.size());
+                shards.add(shard);
+                openShards.put(key, shard);
+            }
+            shard.write(entry);
+        } catch (IOException e) {
+            throw new IndexingException("Unexpected failure writing index entry " + entry, e);
+        }
+    }
+
+    private void closeLeastRecentShard() throws IOException {
+        final Iterator<Map.Entry<String, Shard>> openIt = openShards.entrySet().iterator();
+        while (openShards.size() >= MAX_OPEN_SHARDS && openIt.hasNext()) {
+            final Shard eldest = openIt.next().getValue();
+            openIt.remove();
+            eldest.finish();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Shard shard : openShards.values()) {
+            shard.finish();
+        }
+        openShards.clear();
+        writeManifest();
+    }
+
+    private void writeManifest() throws IOException {
+        final File manifestFile = new File(shardDir, MANIFEST_FILE);
+        try (final JsonGenerator generator = jsonWriter.createGenerator(new FileOutputStream(manifestFile))) {
+            generator.writeStartObject();
+            generator.writeNumberField("version", MANIFEST_VERSION);
+            generator.writeStringField("shardBy", mode.name().toLowerCase());
+            generator.writeArrayFieldStart("shards");
+            for (Shard shard : shards) {
+                shard.writeManifestEntry(generator);
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+        logger.info("Wrote {} lunr shard(s) and manifest {}", shards.size(), manifestFile.getAbsolutePath());
+    }
+
+    private String shardFileName(int id, String suffix) {
+        return String.format("shard-%04d%s.json%s", id, suffix, compression.extension());
+    }
+
+    private final class Shard {
+        private final File file;
+        private final File indexFile;
+        private final CountingOutputStream counter;
+        private final SequenceWriter sequenceWriter;
+        private final Set<Map.Entry<String, String>> categories = new LinkedHashSet<>();
+        private LunrIndexBuilder indexBuilder;
+        private int entries = 0;
+        private String minTerm;
+        private String maxTerm;
+        private boolean finished = false;
+
+        private Shard(int id) throws IOException {
+            this.file = new File(shardDir, shardFileName(id, ""));
+            this.indexFile = prebuilt ? new File(shardDir, shardFileName(id, "-index")) : null;
+            this.indexBuilder = prebuilt ? new LunrIndexBuilder() : null;
+            // count before compression so the size doesn't lag behind by the compressor's buffered blocks
+            this.counter = new CountingOutputStream(compression.wrap(new FileOutputStream(file)));
+            this.sequenceWriter = jsonWriter.writeValues(counter);
+            this.sequenceWriter.init(true /* wrap in array */);
+        }
+
+        private long bytes() {
+            return counter.getCount();
+        }
+
+        private void write(IndexEntry entry) throws IOException {
+            sequenceWriter.write(entry);
+            entries++;
+            categories.add(new AbstractMap.SimpleImmutableEntry<>(
+                Objects.toString(entry.getCategory(), ""), Objects.toString(entry.getSubCategory(), "")));
+
+            if (entry.getKeywords() != null) {
+                for (String term : LunrOutputWriter.KEYWORD_SPLITTER.split(entry.getKeywords())) {
+                    if (minTerm == null || term.compareTo(minTerm) < 0) {
+                        minTerm = term;
+                    }
+                    if (maxTerm == null || term.compareTo(maxTerm) > 0) {
+                        maxTerm = term;
+                    }
+                }
+                if (indexBuilder != null) {
+                    indexBuilder.add(entry.getPdfRelativePath(),
+                        LunrOutputWriter.KEYWORD_SPLITTER.split(entry.getKeywords()));
+                }
+            }
+        }
+
+        /**
+         * Close the shard file and write its prebuilt index, if any.
+         */
+        private void finish() throws IOException {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            sequenceWriter.close();
+
+            if (indexBuilder != null) {
+                try (final JsonGenerator generator =
+                         jsonWriter.createGenerator(compression.wrap(new FileOutputStream(indexFile)))) {
+                    indexBuilder.write(generator);
+                }
+                indexBuilder = null;
+            }
+            logger.debug("Closed lunr shard {} with {} entries.", file.getName(), entries);
+        }
+
+        private void writeManifestEntry(JsonGenerator generator) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("file", file.getName());
+            if (indexFile != null) {
+                generator.writeStringField("index", indexFile.getName());
+            }
+            generator.writeNumberField("entries", entries);
+            generator.writeNumberField("bytes", file.length());
+            generator.writeStringField("minTerm", minTerm);
+            generator.writeStringField("maxTerm", maxTerm);
+            generator.writeArrayFieldStart("categories");
+            for (Map.Entry<String, String> category : categories) {
+                generator.writeStartObject();
+                generator.writeStringField("category", category.getKey());
+                generator.writeStringField("subCategory", category.getValue());
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package org.dougmcintosh.index.lunr;
+
+/**
+ * How write threads hand entries to the lunr writer.
+ */
+public enum LunrSinkMode {
+    /**
+     * Write threads take turns writing entries under the output writer lock.
+     */
+    LOCKED,
+
+    /**
+     * Write threads publish entries to a ring buffer drained by a single writer thread.
+     */
+    ASYNC,
+
+    /**
+     * Like {@link #ASYNC}, but entries are written in manuscript path order when indexing finishes,
+     * so identical input gives identical output.
+     */
+    ORDERED
+}
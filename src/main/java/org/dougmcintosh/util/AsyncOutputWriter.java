@@ -0,0 +1,168 @@
+package org.dougmcintosh.util;
+
+import com.google.common.base.Preconditions;
+import org.dougmcintosh.index.IndexEntry;
+import org.dougmcintosh.index.IndexingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decorates an output writer with a bounded ring buffer drained by a single writer thread. Write
+ * threads only hand entries to the buffer, blocking while it is full, and never wait on the output
+ * lock or the delegate's I/O. The writer thread passes entries to the delegate in batches.
+ * <p>
+ * When reordering, entries are held until the writer is closed and then written in manuscript path
+ * order, so the output doesn't depend on thread scheduling. Every entry is kept in memory until then.
+ * <p>
+ * If the writer thread dies, write threads and {@link #close()} fail with its cause rather than
+ * blocking on a buffer that is no longer drained.
+ */
+public class AsyncOutputWriter extends SynchronizedOutputWriter {
+    private static final Logger logger = LoggerFactory.getLogger(AsyncOutputWriter.class);
+    private static final Object END_OF_WORK = new Object();
+    private static final int BATCH_SIZE = 64;
+    private static final long ENQUEUE_POLL_MILLIS = 100;
+    private static final Comparator<IndexEntry> MANUSCRIPT_ORDER = Comparator.comparing(
+        IndexEntry::getPdfRelativePath, Comparator.nullsFirst(Comparator.naturalOrder()));
+    private final SynchronizedOutputWriter delegate;
+    private final BlockingQueue<Object> ring;
+    private final boolean reorder;
+    private final List<IndexEntry> held = new ArrayList<>();
+    private final Thread writerThread;
+    private long failures = 0;
+    private volatile boolean closed = false;
+    private volatile Throwable failure = null;
+
+    /**
+     * @param capacity maximum number of entries waiting for the writer thread
+     * @param reorder  when true, entries are written in manuscript path order when the writer is closed
+     */
+    public AsyncOutputWriter(SynchronizedOutputWriter delegate, int capacity, boolean reorder) {
+        super(Preconditions.checkNotNull(delegate, "Delegate writer is null.").outputDir, false);
+        Preconditions.checkState(capacity >= 1, "Ring buffer capacity must be >= 1.");
+        this.delegate = delegate;
+        this.ring = new ArrayBlockingQueue<>(capacity);
+        this.reorder = reorder;
+        this.writerThread = new Thread(this::drain, "index-sink");
+        this.writerThread.start();
+    }
+
+    @Override
+    protected void doWrite(IndexEntry entry) {
+        Preconditions.checkState(!closed, "Writer is closed.");
+        try {
+            enqueue(entry);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IndexingException(e, entry.getPdf());
+        }
+    }
+
+    /**
+     * Hand work to the writer thread, blocking while the buffer is full.
+     *
+     * @throws IndexingException if the writer thread has died
+     */
+    private void enqueue(Object work) throws InterruptedException {
+        while (!ring.offer(work, ENQUEUE_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            checkWriterAlive();
+        }
+        // the buffer is cleared when the writer thread dies, so work may have landed after it
+        checkWriterAlive();
+    }
+
+    private void checkWriterAlive() {
+        if (failure != null) {
+            throw new IndexingException("Sink writer thread failed.", failure);
+        }
+    }
+
+    private void drain() {
+        final List<Object> batch = new ArrayList<>(BATCH_SIZE);
+        try {
+            while (true) {
+                batch.add(ring.take());
+                ring.drainTo(batch, BATCH_SIZE - 1);
+
+                for (Object work : batch) {
+                    if (work == END_OF_WORK) {
+                        writeHeld();
+                        return;
+                    }
+                    if (reorder) {
+                        held.add((IndexEntry) work);
+                    } else {
+                        writeToDelegate((IndexEntry) work);
+                    }
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            logger.error("Sink writer interrupted with {} entries buffered.", ring.size() + held.size(), e);
+            fail(e, batch);
+            Thread.currentThread().interrupt();
+        } catch (Throwable t) {
+            logger.error("Sink writer failed with {} entries buffered.", ring.size() + held.size(), t);
+            fail(t, batch);
+        }
+    }
+
+    /**
+     * Record why the writer thread is exiting, release the entries it holds and unblock write threads,
+     * which fail on their next enqueue.
+     */
+    private void fail(Throwable cause, List<Object> batch) {
+        failure = cause;
+        batch.clear();
+        held.clear();
+        ring.clear();
+    }
+
+    private void writeHeld() {
+        held.sort(MANUSCRIPT_ORDER);
+        for (IndexEntry entry : held) {
+            writeToDelegate(entry);
+        }
+        held.clear();
+    }
+
+    private void writeToDelegate(IndexEntry entry) {
+        if (!delegate.write(entry)) {
+            failures++;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            if (failure == null) {
+                enqueue(END_OF_WORK);
+            }
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IndexingException(e);
+        } finally {
+            delegate.close();
+        }
+
+        checkWriterAlive();
+
+        if (failures > 0) {
+            throw new IndexingException(failures + " index entries failed to write. Check logs for details.");
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package org.dougmcintosh.util;
+
+import com.google.common.base.Preconditions;
+
+import java.io.Closeable;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Output compression settings shared by the index writers. Gzip output is compressed by a
+ * {@link ParallelGzipOutputStream} on a thread pool owned by this object, which is shut down by
+ * {@link #close()}.
+ */
+public final class Compression implements Closeable {
+    public static final int DEFAULT_LEVEL = 6;
+    private static final Compression NONE = new Compression(false, DEFAULT_LEVEL, 1);
+    private final boolean enabled;
+    private final int level;
+    private final int threads;
+    private ExecutorService executor;
+
+    private Compression(boolean enabled, int level, int threads) {
+        this.enabled = enabled;
+        this.level = level;
+        this.threads = threads;
+    }
+
+    public static Compression none() {
+        return NONE;
+    }
+
+    /**
+     * @param level   deflate compression level, 0 (store) to 9 (smallest)
+     * @param threads number of threads compressing output
+     */
+    public static Compression gzip(int level, int threads) {
+        Preconditions.checkState(level >= 0 && level <= 9, "Compression level must be between 0 and 9.");
+        Preconditions.checkState(threads >= 1, "Compression threads must be >= 1.");
+        return new Compression(true, level, threads);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return file name extension for output written through {@link #wrap(OutputStream)}
+     */
+    public String extension() {
+        return enabled ? ".gz" : "";
+    }
+
+    /**
+     * @return a stream compressing everything written to the provided stream, or the stream itself
+     * when compression is disabled
+     */
+    public OutputStream wrap(OutputStream out) {
+        if (!enabled) {
+            return out;
+        }
+        return new ParallelGzipOutputStream(
+            out, level, ParallelGzipOutputStream.DEFAULT_BLOCK_SIZE, threads * 2, executor());
+    }
+
+    private synchronized ExecutorService executor() {
+        if (executor == null) {
+            final AtomicInteger threadIdx = new AtomicInteger(0);
+            executor = Executors.newFixedThreadPool(threads, r -> {
+                final Thread thread = new Thread(r, "gzip-" + threadIdx.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+}
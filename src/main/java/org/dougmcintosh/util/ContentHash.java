@@ -0,0 +1,59 @@
+package org.dougmcintosh.util;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Content hashing for source files.
+ */
+public final class ContentHash {
+    /**
+     * Files smaller than this are read into a heap buffer, which is cheaper than mapping and
+     * unmapping the file.
+     */
+    private static final long MAP_THRESHOLD_BYTES = 4L * 1024 * 1024;
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+    /**
+     * Size of each region of the file mapped into memory while hashing.
+     */
+    private static final long MAP_REGION_BYTES = 64L * 1024 * 1024;
+
+    /**
+     * Compute the sha-256 hash of the contents of the provided file. Large files are memory-mapped
+     * a region at a time rather than read into a buffer, which saves a read system call per
+     * buffer. The digest still copies mapped bytes through a small temporary array as it hashes.
+     * Either way, the file's pages stay cached for a parse that follows.
+     */
+    public static HashCode sha256(final File file) throws IOException {
+        Preconditions.checkNotNull(file, "File is null.");
+        final Hasher hasher = Hashing.sha256().newHasher();
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size < MAP_THRESHOLD_BYTES) {
+                final ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_BYTES);
+                while (channel.read(buffer) > 0) {
+                    buffer.flip();
+                    hasher.putBytes(buffer);
+                    buffer.clear();
+                }
+                return hasher.hash();
+            }
+            for (long position = 0; position < size; position += MAP_REGION_BYTES) {
+                hasher.putBytes(channel.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(MAP_REGION_BYTES, size - position)));
+            }
+        }
+        return hasher.hash();
+    }
+
+    private ContentHash() {
+    }
+}
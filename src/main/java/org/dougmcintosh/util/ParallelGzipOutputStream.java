@@ -0,0 +1,162 @@
+package org.dougmcintosh.util;
+
+import com.google.common.base.Preconditions;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip compresses a stream on a thread pool. Written bytes are cut into fixed size blocks, each block
+ * is deflated into a complete gzip member by the executor and the members are written to the
+ * underlying stream in order. A gzip file may hold any number of concatenated members, so the output
+ * reads back with gunzip, {@link java.util.zip.GZIPInputStream} and browsers' gzip content decoding.
+ * <p>
+ * Blocks are compressed independently, which costs a little compression ratio compared to a single
+ * member. At most {@code maxPending} blocks are in flight; further writes wait for the oldest block.
+ * Like other output streams this class is not thread safe.
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+    public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+    private final OutputStream out;
+    private final int level;
+    private final int blockSize;
+    private final int maxPending;
+    private final ExecutorService executor;
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+    private byte[] block;
+    private int count = 0;
+    private boolean memberSubmitted = false;
+    private boolean closed = false;
+
+    /**
+     * @param level      deflate compression level, 0 to 9
+     * @param blockSize  uncompressed bytes per gzip member
+     * @param maxPending maximum number of blocks submitted to the executor but not yet written
+     */
+    public ParallelGzipOutputStream(OutputStream out,
+                                    int level,
+                                    int blockSize,
+                                    int maxPending,
+                                    ExecutorService executor) {
+        Preconditions.checkState(level >= 0 && level <= 9, "Compression level must be between 0 and 9.");
+        Preconditions.checkState(blockSize >= 1, "Block size must be >= 1.");
+        Preconditions.checkState(maxPending >= 1, "Max pending blocks must be >= 1.");
+        this.out = Preconditions.checkNotNull(out, "Output stream is null.");
+        this.executor = Preconditions.checkNotNull(executor, "Executor is null.");
+        this.level = level;
+        this.blockSize = blockSize;
+        this.maxPending = maxPending;
+        this.block = new byte[blockSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        if (count == blockSize) {
+            submitBlock();
+        }
+        block[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        Preconditions.checkPositionIndexes(off, off + len, b.length);
+        while (len > 0) {
+            if (count == blockSize) {
+                submitBlock();
+            }
+            final int n = Math.min(len, blockSize - count);
+            System.arraycopy(b, off, block, count, n);
+            count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Writes every member that has finished compressing. The partially filled block is not cut short,
+     * so flushing doesn't fragment the output into small members.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        while (!pending.isEmpty() && pending.peekFirst().isDone()) {
+            writeOldest();
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            // an empty stream still needs one member to be valid gzip
+            if (count > 0 || !memberSubmitted) {
+                submitBlock();
+            }
+            while (!pending.isEmpty()) {
+                writeOldest();
+            }
+        } finally {
+            closed = true;
+            pending.forEach(future -> future.cancel(false));
+            out.close();
+        }
+    }
+
+    private void submitBlock() throws IOException {
+        final byte[] data = block;
+        final int length = count;
+        pending.addLast(executor.submit(() -> deflate(data, length)));
+        memberSubmitted = true;
+        block = new byte[blockSize];
+        count = 0;
+
+        while (pending.size() > maxPending || (!pending.isEmpty() && pending.peekFirst().isDone())) {
+            writeOldest();
+        }
+    }
+
+    private void writeOldest() throws IOException {
+        try {
+            out.write(pending.removeFirst().get());
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to compress block.", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while awaiting compressed block.");
+        }
+    }
+
+    private byte[] deflate(byte[] data, int length) throws IOException {
+        final ByteArrayOutputStream member = new ByteArrayOutputStream(length / 3 + 64);
+        try (final GZIPOutputStream gzip = new LeveledGzipOutputStream(member, level)) {
+            gzip.write(data, 0, length);
+        }
+        return member.toByteArray();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed.");
+        }
+    }
+
+    private static final class LeveledGzipOutputStream extends GZIPOutputStream {
+        private LeveledGzipOutputStream(OutputStream out, int level) throws IOException {
+            super(out, 8192);
+            def.setLevel(level);
+        }
+    }
+}
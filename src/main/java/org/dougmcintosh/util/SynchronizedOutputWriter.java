@@ -3,6 +3,7 @@ package org.dougmcintosh.util;
 import com.google.common.base.Preconditions;
 import org.dougmcintosh.index.IndexEntry;
 import org.dougmcintosh.index.IndexingException;
+import org.dougmcintosh.index.jfr.IndexWriteEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -12,6 +13,7 @@ import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Utility class providing for proper locking of a single writer via a {@link ReentrantLock}.
+ * Writers whose {@link #doWrite(IndexEntry)} is already thread safe can opt out of the lock.
  */
 public abstract class SynchronizedOutputWriter implements Closeable {
     private static final Logger logger = LoggerFactory.getLogger(SynchronizedOutputWriter.class);
@@ -19,25 +21,54 @@ public abstract class SynchronizedOutputWriter implements Closeable {
     protected final File outputDir;
 
     protected SynchronizedOutputWriter(File outputDir) {
+        this(outputDir, true);
+    }
+
+    /**
+     * @param locking when false, {@link #doWrite(IndexEntry)} is called concurrently from every
+     *                writing thread and must be thread safe
+     */
+    protected SynchronizedOutputWriter(File outputDir, boolean locking) {
         Preconditions.checkNotNull(outputDir, "Output file is null.");
         Preconditions.checkState(outputDir.exists(),
             "Output dir does not exist: " + outputDir.getAbsolutePath());
 
         this.outputDir = outputDir;
-        this.writeLock = new ReentrantLock();
+        this.writeLock = locking ? new ReentrantLock() : null;
 
         logger.info("Initialized output writer in directory {}", outputDir.getAbsolutePath());
     }
 
-    public void write(final IndexEntry entry) {
+    /**
+     * Write the provided entry, holding the write lock unless this writer is not locking.
+     *
+     * @return true if the entry was written, false if the writer failed
+     */
+    public boolean write(final IndexEntry entry) {
+        final IndexWriteEvent event = new IndexWriteEvent();
+        event.begin();
         try {
-            writeLock.lock();
-            logger.debug("Attempting to write index entry for \"{}\"", entry);
+            if (writeLock != null) {
+                final long start = System.nanoTime();
+                writeLock.lock();
+                event.lockWait = System.nanoTime() - start;
+            }
             doWrite(entry);
+            event.written = true;
+            return true;
         } catch (Exception e) {
             logger.error("Worker threw exception.", e);
+            return false;
         } finally {
-            writeLock.unlock();
+            if (writeLock != null && writeLock.isHeldByCurrentThread()) {
+                writeLock.unlock();
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                event.manuscript = entry.getPdfRelativePath();
+                event.writer = getClass().getSimpleName();
+                event.commit();
+            }
         }
     }
 
@@ -0,0 +1,124 @@
+package org.dougmcintosh.index.extract;
+
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * Checks the single-pass cleanup engine against the filters it replaced: the default rules must
+ * produce the same text as normalizing whitespace and then applying {@link StaticPatternExtractFilter},
+ * however the text is split into writes.
+ */
+public class CleanupRulesTest {
+    private static final String[] WORDS = {
+        "grace", "faith", "the", "of", "Lord", "COPYRIGHT", "\u00a9", "2001", "Page", "1", "church", "Lilburn"
+    };
+    private static final String[] SEPARATORS = {" ", " ", " ", "\n", "\r\n", "\t", "  ", "\u2028"};
+
+    public static void main(String... args) throws IOException {
+        final Random random = new Random(17);
+        defaultRulesMatchStaticFilter(random);
+        literalAndRegexRulesMatchSequentialReplace(random);
+        leftmostLongestLiteralWins();
+        System.out.println("CleanupRulesTest passed.");
+    }
+
+    private static void defaultRulesMatchStaticFilter(Random random) throws IOException {
+        final CleanupRules rules = CleanupRules.defaults();
+        for (int i = 0; i < 500; i++) {
+            final String text = randomText(random, random.nextInt(40000), "COPYRIGHT \u00a9 2001 Lilburn Church");
+            final String expected = StaticPatternExtractFilter.filter(text.replaceAll("[\\n\\r\\t]", " "));
+            check(expected, clean(rules, text, random), text);
+        }
+    }
+
+    private static void literalAndRegexRulesMatchSequentialReplace(Random random) throws IOException {
+        final String rulesText = String.join("\n",
+            "# headers and footers",
+            "literal Lilburn Presbyterian Church",
+            "literal Page 1 of",
+            "literal Page 1 of 2",
+            "regex COPYRIGHT \u00a9 \\d{4}",
+            "regex \\[\\d+\\]");
+        final CleanupRules rules = CleanupRules.parse(new StringReader(rulesText), "test rules");
+        final List<String> phrases = Arrays.asList(
+            "Lilburn Presbyterian Church", "Page 1 of 2", "Page 1 of", "COPYRIGHT \u00a9 2001", "[12]", "[7]");
+
+        for (int i = 0; i < 500; i++) {
+            // phrases are fenced so removing one can't join its neighbours into another
+            final StringBuilder builder = new StringBuilder();
+            while (builder.length() < random.nextInt(40000)) {
+                builder.append(WORDS[random.nextInt(WORDS.length)]).append(SEPARATORS[random.nextInt(SEPARATORS.length)]);
+                if (random.nextInt(20) == 0) {
+                    builder.append('|').append(phrases.get(random.nextInt(phrases.size()))).append('|');
+                }
+            }
+            final String text = builder.toString();
+
+            String expected = text.replaceAll("[\\n\\r\\t]", " ");
+            expected = expected.replace("Lilburn Presbyterian Church", "");
+            expected = expected.replace("Page 1 of 2", "");
+            expected = expected.replace("Page 1 of", "");
+            expected = Pattern.compile("COPYRIGHT \u00a9 \\d{4}").matcher(expected).replaceAll("");
+            expected = Pattern.compile("\\[\\d+\\]").matcher(expected).replaceAll("");
+            check(expected, clean(rules, text, random), text);
+        }
+    }
+
+    private static void leftmostLongestLiteralWins() throws IOException {
+        final CleanupRules rules = CleanupRules.parse(
+            new StringReader("literal bc\nliteral ab\nliteral abcd\nregex c\\w"), "test rules");
+        check("x-x", rules.clean("xabcd-x"), "xabcd-x");
+        check("xa-", rules.clean("xacd-"), "xacd-");
+        check("", rules.clean(""), "");
+    }
+
+    private static String randomText(Random random, int length, String phrase) {
+        final StringBuilder builder = new StringBuilder(length + 64);
+        while (builder.length() < length) {
+            if (random.nextInt(50) == 0) {
+                builder.append(phrase);
+            } else {
+                builder.append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            builder.append(SEPARATORS[random.nextInt(SEPARATORS.length)]);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Clean the text through a reused writer in randomly sized writes, as a parser's content handler would.
+     */
+    private static String clean(CleanupRules rules, String text, Random random) throws IOException {
+        final CleanupWriter writer = rules.writer(Writer.nullWriter());
+        // leave text from a previous document behind to check reset discards it
+        writer.write("COPYRIGHT \u00a9 1999 left over");
+        final StringWriter out = new StringWriter();
+        try (final Writer cleaning = writer.reset(out)) {
+            int pos = 0;
+            while (pos < text.length()) {
+                final int len = Math.min(text.length() - pos, 1 + random.nextInt(random.nextBoolean() ? 16 : 20000));
+                cleaning.write(text, pos, len);
+                pos += len;
+            }
+        }
+        return out.toString();
+    }
+
+    private static void check(String expected, String actual, String input) {
+        Preconditions.checkState(expected.equals(actual),
+            "Cleaned text differs for input of %s chars.%nExpected: %s%nActual:   %s",
+            input.length(), abbreviate(expected), abbreviate(actual));
+    }
+
+    private static String abbreviate(String text) {
+        return text.length() <= 200 ? text : text.substring(0, 200) + "...";
+    }
+}
@@ -0,0 +1,146 @@
+package org.dougmcintosh.index.extract.cache;
+
+import com.google.common.base.Preconditions;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * Round trips text through {@link ExtractCache}, covering least recently used eviction, compaction
+ * on close, reopening the compacted segment, truncation of a torn record at the end of the segment and
+ * discarding a segment with an unrecognized header.
+ */
+public class ExtractCacheTest {
+    private static final int ENTRIES = 40;
+    private static final int TEXT_LENGTH = 1000;
+    private static final long MAX_BYTES = 12 * TEXT_LENGTH;
+
+    public static void main(String... args) throws IOException {
+        final File cacheDir = Files.createTempDirectory("extract-cache-test").toFile();
+        try {
+            final Path segment = new File(cacheDir, ExtractCache.SEGMENT_FILE_NAME).toPath();
+            final Map<String, String> texts = texts(new Random(41));
+
+            final Map<String, String> live = putAndEvict(cacheDir, texts, segment);
+            reopenAfterCompaction(cacheDir, texts, live);
+            tornRecordIsTruncated(cacheDir, segment);
+            unrecognizedHeaderIsDiscarded(cacheDir, segment);
+        } finally {
+            MoreFiles.deleteRecursively(cacheDir.toPath(), RecursiveDeleteOption.ALLOW_INSECURE);
+        }
+        System.out.println("ExtractCacheTest passed.");
+    }
+
+    private static Map<String, String> putAndEvict(File cacheDir, Map<String, String> texts, Path segment)
+        throws IOException {
+        final Map<String, String> live = new LinkedHashMap<>();
+        final long segmentLength;
+        try (final ExtractCache cache = ExtractCache.open(cacheDir, MAX_BYTES)) {
+            check(!cache.get("key-0").isPresent(), "Empty cache has key-0.");
+            for (Map.Entry<String, String> entry : texts.entrySet()) {
+                cache.put(entry.getKey(), entry.getValue());
+                checkText(cache, entry.getKey(), entry.getValue());
+                // keep key-0 recently used so eviction passes it over
+                checkText(cache, "key-0", texts.get("key-0"));
+            }
+            cache.put("key-0", "replacement");
+            checkText(cache, "key-0", texts.get("key-0"));
+
+            check(!cache.get("key-1").isPresent(), "Least recently used key-1 wasn't evicted.");
+            for (Map.Entry<String, String> entry : texts.entrySet()) {
+                final Optional<String> text = cache.get(entry.getKey());
+                if (text.isPresent()) {
+                    check(text.get().equals(entry.getValue()), "Unexpected text for " + entry.getKey());
+                    live.put(entry.getKey(), entry.getValue());
+                }
+            }
+            check(live.size() > 1 && live.size() < ENTRIES, "Unexpected live entry count " + live.size());
+            check(live.containsKey("key-" + (ENTRIES - 1)), "Most recently put entry was evicted.");
+            segmentLength = Files.size(segment);
+        }
+        check(Files.size(segment) < segmentLength / 2, "Segment wasn't compacted on close.");
+        return live;
+    }
+
+    private static void reopenAfterCompaction(File cacheDir, Map<String, String> texts, Map<String, String> live)
+        throws IOException {
+        try (final ExtractCache cache = ExtractCache.open(cacheDir, MAX_BYTES)) {
+            for (Map.Entry<String, String> entry : texts.entrySet()) {
+                final Optional<String> text = cache.get(entry.getKey());
+                if (live.containsKey(entry.getKey())) {
+                    check(text.isPresent() && text.get().equals(entry.getValue()),
+                        "Compacted cache lost " + entry.getKey());
+                } else {
+                    check(!text.isPresent(), "Compacted cache resurrected " + entry.getKey());
+                }
+            }
+            cache.put("after-compaction", "caf\u00e9 \u00fcber gr\u00e2ce");
+        }
+        try (final ExtractCache cache = ExtractCache.open(cacheDir, MAX_BYTES)) {
+            checkText(cache, "after-compaction", "caf\u00e9 \u00fcber gr\u00e2ce");
+        }
+    }
+
+    private static void tornRecordIsTruncated(File cacheDir, Path segment) throws IOException {
+        final long intactLength = Files.size(segment);
+        try (final ExtractCache cache = ExtractCache.open(cacheDir, MAX_BYTES)) {
+            cache.put("torn", "text appended by a run that was killed mid write");
+        }
+        try (final RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        try (final ExtractCache cache = ExtractCache.open(cacheDir, MAX_BYTES)) {
+            check(Files.size(segment) == intactLength, "Torn record wasn't truncated.");
+            check(!cache.get("torn").isPresent(), "Torn record was loaded.");
+            checkText(cache, "after-compaction", "caf\u00e9 \u00fcber gr\u00e2ce");
+            cache.put("torn", "rewritten");
+        }
+        try (final ExtractCache cache = ExtractCache.open(cacheDir, MAX_BYTES)) {
+            checkText(cache, "torn", "rewritten");
+        }
+    }
+
+    private static void unrecognizedHeaderIsDiscarded(File cacheDir, Path segment) throws IOException {
+        try (final RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.writeInt(0);
+        }
+        try (final ExtractCache cache = ExtractCache.open(cacheDir, MAX_BYTES)) {
+            check(!cache.get("torn").isPresent(), "Cache with a bad header was loaded.");
+            cache.put("torn", "fresh");
+            checkText(cache, "torn", "fresh");
+        }
+    }
+
+    private static Map<String, String> texts(Random random) {
+        final Map<String, String> texts = new LinkedHashMap<>();
+        for (int i = 0; i < ENTRIES; i++) {
+            final StringBuilder text = new StringBuilder(TEXT_LENGTH);
+            while (text.length() < TEXT_LENGTH) {
+                // random letters with the odd accented one, so entries don't compress to nothing
+                text.append(random.nextInt(20) == 0 ? '\u00e9' : (char) ('a' + random.nextInt(26)));
+            }
+            texts.put("key-" + i, text.toString());
+        }
+        return texts;
+    }
+
+    private static void checkText(ExtractCache cache, String key, String expected) {
+        final Optional<String> actual = cache.get(key);
+        check(actual.isPresent(), "Cache is missing " + key);
+        check(actual.get().equals(expected), "Unexpected text for " + key + ": " + actual.get());
+    }
+
+    private static void check(boolean condition, String message) {
+        Preconditions.checkState(condition, message);
+    }
+}
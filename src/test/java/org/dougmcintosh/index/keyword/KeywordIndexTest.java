@@ -0,0 +1,205 @@
+package org.dougmcintosh.index.keyword;
+
+import com.google.common.base.Preconditions;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import org.dougmcintosh.index.IndexEntry;
+import org.dougmcintosh.util.Compression;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Writes keyword indexes with {@link KeywordIndexWriter} and reads them back with {@link KeywordIndexReader},
+ * plain and gzipped, checking stored fields, front coded terms, delta coded postings and the checksum trailer.
+ */
+public class KeywordIndexTest {
+    private static final int SERMONS = 300;
+
+    public static void main(String... args) throws IOException {
+        varintRoundTrip();
+        final File workDir = Files.createTempDirectory("keyword-index-test").toFile();
+        try {
+            final File pdf = new File(workDir, "sermon.pdf");
+            Files.write(pdf.toPath(), new byte[]{'%', 'P', 'D', 'F'});
+
+            final File plain = write(new File(workDir, "plain"), pdf, Compression.none());
+            check(plain.getName().endsWith(".kwix"), "Unexpected plain file name " + plain.getName());
+            verify(KeywordIndexReader.open(plain), pdf);
+
+            final Compression gzip = Compression.gzip(Compression.DEFAULT_LEVEL, 2);
+            try {
+                final File gzipped = write(new File(workDir, "gzip"), pdf, gzip);
+                check(gzipped.getName().endsWith(".kwix.gz"), "Unexpected gzip file name " + gzipped.getName());
+                verify(KeywordIndexReader.open(gzipped), pdf);
+            } finally {
+                gzip.close();
+            }
+
+            corruptionIsDetected(plain);
+        } finally {
+            MoreFiles.deleteRecursively(workDir.toPath(), RecursiveDeleteOption.ALLOW_INSECURE);
+        }
+        System.out.println("KeywordIndexTest passed.");
+    }
+
+    private static void varintRoundTrip() throws IOException {
+        final int[] values = {0, 1, 127, 128, 16383, 16384, 2097151, 2097152, Integer.MAX_VALUE, -1};
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        for (int value : values) {
+            Varint.write(out, value);
+        }
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        for (int value : values) {
+            final int actual = Varint.read(in);
+            check(actual == value, "Varint " + value + " read back as " + actual);
+        }
+        check(in.read() == -1, "Varint stream has trailing bytes.");
+    }
+
+    private static File write(File outputDir, File pdf, Compression compression) throws IOException {
+        Files.createDirectories(outputDir.toPath());
+        final KeywordIndexWriter writer = new KeywordIndexWriter(outputDir, compression);
+        // written in reverse so the reader's doc order comes from the writer's sort, not arrival order
+        for (int i = SERMONS - 1; i >= 0; i--) {
+            check(writer.write(entry(i, pdf)), "Entry " + i + " was not written.");
+        }
+        check(writer.write(IndexEntry.builder().pdfFile(pdf).build()), "Empty entry was not written.");
+        writer.close();
+
+        final File[] files = outputDir.listFiles();
+        check(files != null && files.length == 1, "Expected a single keyword index in " + outputDir);
+        return files[0];
+    }
+
+    private static IndexEntry entry(int i, File pdf) {
+        return IndexEntry.builder()
+            .category("Sermons")
+            .subCategory(i % 2 == 0 ? "Old Testament" : null)
+            .seriesCode(String.format("S%02d", i / 25))
+            .seriesTitle("Series " + i / 25)
+            .sermonTitle(i % 11 == 0 ? "Gr\u00e2ce \u00fcber alles" : "Sermon " + i)
+            .passage(i % 4 == 0 ? "" : "John " + i)
+            .date(i % 3 == 0 ? null : LocalDate.of(2001, 1, 1).plusDays(i))
+            .pdfFile(pdf)
+            .pdfRelativePath(path(i))
+            .audio(i % 5 == 0 ? null : String.format("audio/%04d.mp3", i))
+            .keywords(String.join(" ", keywords(i)))
+            .build();
+    }
+
+    private static String path(int i) {
+        return String.format("sermons/%04d.pdf", i);
+    }
+
+    private static List<String> keywords(int i) {
+        final List<String> keywords = new ArrayList<>();
+        keywords.add("grace");
+        if (i % 2 == 0) {
+            keywords.add("gracious");
+            keywords.add("graceful");
+        }
+        if (i % 3 == 0) {
+            keywords.add("\u00fcber");
+        }
+        if (i % 7 == 0) {
+            keywords.add("\u00e9glise");
+            keywords.add("\u00e9gal");
+        }
+        keywords.add("term" + i);
+        return keywords;
+    }
+
+    private static void verify(KeywordIndexReader reader, File pdf) {
+        check(reader.documentCount() == SERMONS + 1, "Unexpected document count " + reader.documentCount());
+        // null paths sort first, so the empty entry is doc 0 and sermon i is doc i + 1
+        check(reader.document(0).isEmpty(), "Empty entry has fields " + reader.document(0));
+
+        final Map<String, List<Integer>> expectedPostings = new TreeMap<>();
+        for (int i = 0; i < SERMONS; i++) {
+            final Map<String, String> actual = reader.document(i + 1);
+            final IndexEntry entry = entry(i, pdf);
+            checkField(actual, "pdf", entry.getPdfRelativePath());
+            checkField(actual, "audio", entry.getAudio());
+            checkField(actual, "category", entry.getCategory());
+            checkField(actual, "subCategory", entry.getSubCategory());
+            checkField(actual, "seriesCode", entry.getSeriesCode());
+            checkField(actual, "seriesTitle", entry.getSeriesTitle());
+            checkField(actual, "sermonTitle", entry.getSermonTitle());
+            checkField(actual, "passage", entry.getPassage());
+            checkField(actual, "sermonDate", entry.getSermonDate() != null ? entry.getSermonDate().toString() : null);
+
+            for (String keyword : keywords(i)) {
+                expectedPostings.computeIfAbsent(keyword, k -> new ArrayList<>()).add(i + 1);
+            }
+        }
+
+        check(reader.terms().equals(new ArrayList<>(expectedPostings.keySet())),
+            "Unexpected terms " + reader.terms());
+        for (Map.Entry<String, List<Integer>> expected : expectedPostings.entrySet()) {
+            final int[] actual = reader.postings(expected.getKey());
+            final int[] wanted = expected.getValue().stream().mapToInt(Integer::intValue).toArray();
+            check(Arrays.equals(actual, wanted), "Unexpected postings for " + expected.getKey() + ": "
+                + Arrays.toString(actual));
+        }
+        check(reader.postings("missing").length == 0, "Missing term has postings.");
+    }
+
+    private static void checkField(Map<String, String> document, String field, String expected) {
+        if (expected == null) {
+            check(!document.containsKey(field), "Null " + field + " read back as " + document.get(field));
+        } else {
+            check(expected.equals(document.get(field)),
+                "Expected " + field + " '" + expected + "' but was '" + document.get(field) + "'");
+        }
+    }
+
+    private static void corruptionIsDetected(File plain) throws IOException {
+        final byte[] bytes = Files.readAllBytes(plain.toPath());
+        // change one character of a stored path, leaving every length prefix intact
+        final byte[] target = path(SERMONS / 2).getBytes(StandardCharsets.UTF_8);
+        final int offset = indexOf(bytes, target);
+        check(offset >= 0, "Stored path not found in " + plain);
+        bytes[offset] = 'S';
+
+        final File corrupt = new File(plain.getParentFile(), "corrupt.kwix");
+        Files.write(corrupt.toPath(), bytes);
+        try {
+            KeywordIndexReader.open(corrupt);
+        } catch (IOException e) {
+            check(e.getMessage().contains("checksum"), "Unexpected failure " + e.getMessage());
+            return;
+        }
+        throw new IllegalStateException("Corrupt keyword index was read without error.");
+    }
+
+    private static int indexOf(byte[] bytes, byte[] target) {
+        outer:
+        for (int i = 0; i <= bytes.length - target.length; i++) {
+            for (int j = 0; j < target.length; j++) {
+                if (bytes[i + j] != target[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static void check(boolean condition, String message) {
+        Preconditions.checkState(condition, message);
+    }
+}
@@ -0,0 +1,108 @@
+package org.dougmcintosh.util;
+
+import com.google.common.base.Preconditions;
+import com.google.common.io.ByteStreams;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Compresses streams with {@link ParallelGzipOutputStream} and reads them back with {@link GZIPInputStream},
+ * which must see the concatenated members as the original bytes.
+ */
+public class ParallelGzipOutputStreamTest {
+
+    public static void main(String... args) throws IOException {
+        final ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            final Random random = new Random(29);
+            emptyStream(executor);
+            roundTrip(executor, random, 6, ParallelGzipOutputStream.DEFAULT_BLOCK_SIZE, 6,
+                ParallelGzipOutputStream.DEFAULT_BLOCK_SIZE * 5 / 2);
+            roundTrip(executor, random, 1, 4096, 1, 4096 * 3);
+            roundTrip(executor, random, 0, 1000, 2, 1);
+            for (int i = 0; i < 50; i++) {
+                roundTrip(executor, random, random.nextInt(10), 1 + random.nextInt(5000), 1 + random.nextInt(4),
+                    random.nextInt(60000));
+            }
+            writeAfterCloseFails(executor);
+        } finally {
+            executor.shutdown();
+        }
+        System.out.println("ParallelGzipOutputStreamTest passed.");
+    }
+
+    private static void emptyStream(ExecutorService executor) throws IOException {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        new ParallelGzipOutputStream(compressed, 6, 1024, 2, executor).close();
+        check(compressed.size() > 0, "Empty stream produced no gzip member.");
+        check(gunzip(compressed.toByteArray()).length == 0, "Empty stream read back with content.");
+    }
+
+    private static void roundTrip(ExecutorService executor,
+                                  Random random,
+                                  int level,
+                                  int blockSize,
+                                  int maxPending,
+                                  int length) throws IOException {
+        final byte[] data = text(random, length);
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (final ParallelGzipOutputStream out =
+                 new ParallelGzipOutputStream(compressed, level, blockSize, maxPending, executor)) {
+            // mix single byte and array writes, with arrays both shorter and longer than a block
+            int off = 0;
+            while (off < length) {
+                if (random.nextInt(4) == 0) {
+                    out.write(data[off++]);
+                } else {
+                    final int n = Math.min(length - off, random.nextInt(blockSize * 2) + 1);
+                    out.write(data, off, n);
+                    off += n;
+                }
+                if (random.nextInt(16) == 0) {
+                    out.flush();
+                }
+            }
+        }
+        check(Arrays.equals(gunzip(compressed.toByteArray()), data),
+            "Round trip mismatch for level " + level + ", block size " + blockSize + ", length " + length);
+    }
+
+    private static void writeAfterCloseFails(ExecutorService executor) throws IOException {
+        final ParallelGzipOutputStream out =
+            new ParallelGzipOutputStream(new ByteArrayOutputStream(), 6, 1024, 2, executor);
+        out.close();
+        out.close();
+        try {
+            out.write(1);
+        } catch (IOException e) {
+            return;
+        }
+        throw new IllegalStateException("Write after close succeeded.");
+    }
+
+    private static byte[] text(Random random, int length) {
+        final byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            // a small alphabet keeps the data compressible, like the extracted text this stream carries
+            data[i] = random.nextInt(8) == 0 ? (byte) ' ' : (byte) ('a' + random.nextInt(12));
+        }
+        return data;
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException {
+        try (final GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return ByteStreams.toByteArray(in);
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        Preconditions.checkState(condition, message);
+    }
+}